@@ -0,0 +1,283 @@
+package com.cdr.gen;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Writes calls to <code>buckets</code> files (16 by default),
+ * <code>&lt;prefix&gt;-bucket-00000.csv</code> and so on, routing each call by
+ * the hash of the text of its calling number,
+ * <code>(hashCode &amp; Integer.MAX_VALUE) % buckets</code>. This is how Hive
+ * buckets a string column in tables with <code>bucketing_version=1</code>, the
+ * default before Hive 3; tables with version 2 hash with murmur3 and must be
+ * created with <code>'bucketing_version'='1'</code> to read these files as
+ * buckets.
+ *
+ * If <code>bucketSort</code> is set, the calls of each bucket are kept in a
+ * {@link CallBuffer}, memory-mapped in <code>bucketSpillDir</code> (the
+ * temporary directory by default), and when the writer is closed the buckets
+ * are sorted by calling number and start time and written in parallel.
+ * Otherwise the calls are written as they come, with a buffer of
+ * <code>partitionBufferSize</code> bytes per bucket.
+ *
+ * Instances are not thread-safe.
+ */
+public class BucketedWriter implements Closeable, CallSink {
+    private static final int DEFAULT_BUCKETS = 16;
+    private static final int DEFAULT_BUFFER_SIZE = 256 << 10;
+    // the calls of a person are sorted by start time with their position in the low bits
+    private static final int POSITION_BITS = 24;
+
+    private final Map<String, Object> config;
+    private final FormatTables formats;
+    private final int bucketCount;
+    private final boolean sort;
+    private final Path spillDir;
+    private final Bucket[] buckets;
+    private final byte[] digits = new byte[PhoneNumberGenerator.NUMBER_LENGTH];
+
+    /**
+     * @param dir The directory of the files
+     * @param prefix The prefix of the names of the files
+     * @param config The configuration
+     * @throws IOException If a file can't be opened
+     */
+    public BucketedWriter(Path dir, String prefix, Map<String, Object> config) throws IOException {
+        String suffix = ".csv" + Compression.fromConfig(config).getSuffix();
+        this.config = config;
+        this.formats = new FormatTables(config);
+        this.bucketCount = ((Number) config.getOrDefault("buckets", (long) DEFAULT_BUCKETS)).intValue();
+        this.sort = Boolean.parseBoolean(config.getOrDefault("bucketSort", false).toString());
+
+        this.spillDir = Paths.get((String) config.getOrDefault("bucketSpillDir",
+                System.getProperty("java.io.tmpdir")));
+
+        if (bucketCount < 1) {
+            throw new RuntimeException("The number of buckets must be positive");
+        }
+
+        this.buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket(dir.resolve(String.format("%s-bucket-%05d%s", prefix, i, suffix)));
+        }
+    }
+
+    /**
+     * @param number A phone number
+     * @return The bucket of the phone number
+     */
+    public int getBucket(long number) {
+        int length = PhoneNumberGenerator.write(number, digits, 0);
+        int hash = 0;
+
+        // the hash code of the number as a String
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + digits[i];
+        }
+
+        return (hash & Integer.MAX_VALUE) % bucketCount;
+    }
+
+    /**
+     * Writes all the calls of a person.
+     * @param p The person
+     * @throws IOException If a file can't be written
+     */
+    public void write(Person p) throws IOException {
+        if (p.getCalls().isEmpty()) {
+            return;
+        }
+
+        Bucket bucket = buckets[getBucket(p.getNumber())];
+        bucket.startRun(p.getNumber());
+
+        for (Call call : p.getCalls()) {
+            bucket.write(p.getNumber(), call);
+        }
+    }
+
+    /**
+     * Writes a call.
+     * @param callingNumber The number of the person who made the call
+     * @param call The call
+     * @throws IOException If a file can't be written
+     */
+    @Override
+    public void write(long callingNumber, Call call) throws IOException {
+        Bucket bucket = buckets[getBucket(callingNumber)];
+        bucket.startRun(callingNumber);
+        bucket.write(callingNumber, call);
+    }
+
+    /**
+     * @return The files of the buckets
+     */
+    public List<Path> getFiles() {
+        List<Path> files = new ArrayList<>(bucketCount);
+        for (Bucket bucket : buckets) {
+            files.add(bucket.file);
+        }
+        return files;
+    }
+
+    /**
+     * Writes the sorted buckets, if they are sorted, and closes the files.
+     * @throws IOException If a file can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            IntStream stream = IntStream.range(0, bucketCount);
+            if (sort) {
+                stream = stream.parallel();
+            }
+
+            stream.forEach(i -> {
+                try {
+                    buckets[i].close();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * The file of a bucket and, when sorted, its calls with the start of the
+     * run of calls of each person.
+     */
+    private final class Bucket {
+        final Path file;
+        CsvWriter writer;
+        CallBuffer calls;
+        long[] runs = new long[16];
+        int runCount;
+        long lastNumber;
+
+        Bucket(Path file) throws IOException {
+            this.file = file;
+
+            if (!sort) {
+                writer = new CsvWriter(file, config, formats, ((Number) config.getOrDefault("partitionBufferSize",
+                        (long) DEFAULT_BUFFER_SIZE)).intValue());
+                writer.writeHeaders();
+            }
+        }
+
+        void startRun(long callingNumber) {
+            if (!sort || (runCount > 0 && callingNumber == lastNumber)) {
+                return;
+            }
+            lastNumber = callingNumber;
+
+            if (runCount == runs.length) {
+                runs = Arrays.copyOf(runs, runCount * 2);
+            }
+            runs[runCount++] = (calls != null) ? calls.size() : 0;
+        }
+
+        void write(long callingNumber, Call call) throws IOException {
+            if (!sort) {
+                writer.write(callingNumber, call);
+                return;
+            }
+
+            if (calls == null) {
+                calls = new CallBuffer(call.getCells(), spillDir);
+            }
+            calls.add(callingNumber, call);
+        }
+
+        void close() throws IOException {
+            try {
+                if (sort) {
+                    writeSorted();
+                }
+            } finally {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+
+        private void writeSorted() throws IOException {
+            writer = new CsvWriter(file, config, formats);
+            writer.writeHeaders();
+
+            if (calls == null) {
+                return;
+            }
+
+            try {
+                Call call = new Call();
+                long[] order = new long[16];
+
+                for (int run : sortRuns()) {
+                    long first = runs[run];
+                    long last = (run + 1 < runCount) ? runs[run + 1] : calls.size();
+                    int length = (int) (last - first);
+
+                    if (length >= 1 << POSITION_BITS) {
+                        throw new IOException("Too many calls for the number " + calls.getCallingNumber(first));
+                    }
+                    if (order.length < length) {
+                        order = new long[Math.max(length, order.length * 2)];
+                    }
+
+                    for (int i = 0; i < length; i++) {
+                        order[i] = (calls.getStartSecond(first + i) << POSITION_BITS) | i;
+                    }
+                    Arrays.sort(order, 0, length);
+
+                    for (int i = 0; i < length; i++) {
+                        long index = first + (order[i] & ((1 << POSITION_BITS) - 1));
+                        writer.write(calls.getCallingNumber(index), calls.read(index, call));
+                    }
+                }
+            } finally {
+                calls.close();
+            }
+        }
+
+        /**
+         * @return The runs in the order of their calling numbers
+         */
+        private int[] sortRuns() {
+            long[] numbers = new long[runCount];
+            for (int run = 0; run < runCount; run++) {
+                numbers[run] = calls.getCallingNumber(runs[run]);
+            }
+
+            long[] sorted = numbers.clone();
+            Arrays.sort(sorted);
+
+            int[] order = new int[runCount];
+            Arrays.fill(order, -1);
+
+            for (int run = 0; run < runCount; run++) {
+                int pos = Arrays.binarySearch(sorted, numbers[run]);
+
+                // a number with several runs takes the first free position of its range
+                while (pos > 0 && sorted[pos - 1] == numbers[run]) {
+                    pos--;
+                }
+                while (order[pos] >= 0) {
+                    pos++;
+                }
+                order[pos] = run;
+            }
+
+            return order;
+        }
+    }
+}
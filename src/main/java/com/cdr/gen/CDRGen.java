@@ -2,11 +2,11 @@ package com.cdr.gen;
 
 import com.cdr.gen.util.IOUtils;
 import com.cdr.gen.util.JavaUtils;
+import com.cdr.gen.util.Rng;
 import com.google.common.io.Files;
 import org.apache.commons.cli.*;
+import org.apache.log4j.ConsoleAppender;
 import org.apache.log4j.Logger;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -15,15 +15,19 @@ import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -35,9 +39,15 @@ import java.util.concurrent.TimeUnit;
 public final class CDRGen {
     private static final Logger LOG = Logger.getLogger(CDRGen.class);
     private static final String DEFAULT_CONFIG_FILE = "/config.json";
+    private static final String FILE_OUTPUT = "file";
+    private static final String PARTS_OUTPUT = "parts";
+    private static final String PARTITIONED_OUTPUT = "partitioned";
+    private static final String BUCKETED_OUTPUT = "bucketed";
+    private static final String SORTED_OUTPUT = "sorted";
+    private static final String REPLAY_OUTPUT = "replay";
+    private static final String STANDARD_OUTPUT = "-";
+    private static final long SECONDS_PER_DAY = 86400;
     private Map<String, Object> config;
-    private DateTimeFormatter dateFormatter = DateTimeFormat.forPattern("dd/MM/yyyy");
-    private DateTimeFormatter timeFormatter = DateTimeFormat.forPattern("HH:mm:ss");
 
     public CDRGen() {
         loadConfig(DEFAULT_CONFIG_FILE);
@@ -74,76 +84,346 @@ public final class CDRGen {
         return config;
     }
 
-    private String getHeaders() {
-        Boolean includeLineId = (Boolean) config.get("includeLineId");
-
-        List<String> headers = new ArrayList<>();
-        headers.add("uuid");
-        headers.add("cell_id");
-        headers.add("lat");
-        headers.add("lon");
-        headers.add("calling_number");
-        if (includeLineId != null && includeLineId) {
-            headers.add("line_id");
+    public void saveToFile(String outputFile, List<Person> customers) {
+
+        try (CsvWriter writer = new CsvWriter(Paths.get(outputFile), config)) {
+            writer.writeHeaders();
+
+            for (Person p : customers) {
+                writer.write(p);
+            }
+        } catch (IOException ex) {
+            LOG.error("Error while writing the output file.", ex);
         }
-        headers.add("called_number");
-        headers.add("start_date_dd_mm_yyyy");
-        headers.add("end_date_dd_mm_yyyy");
-        headers.add("start_time_hh_mm_ss");
-        headers.add("end_time_hh_mm_ss");
-        headers.add("call_type");
-        headers.add("cost");
-        headers.add("fraud");
-        headers.add("fraud_2");
-        return String.join(",", headers);
     }
 
-    private String getRow(Person p, Call c) {
-        Boolean includeLineId = (Boolean) config.get("includeLineId");
-
-        List<String> row = new ArrayList<>();
-        row.add(c.getId().toString());
-        row.add(c.getCell().getId());
-        row.add(Double.toString(c.getCell().getLat()));
-        row.add(Double.toString(c.getCell().getLon()));
-        row.add(p.getPhoneNumber());
-        if (includeLineId != null && includeLineId) {
-            row.add(Integer.toString(c.getLine()));
+    /**
+     * Generates the population and writes each person's calls as soon as they
+     * are created, without keeping the population in memory.
+     * @param outputFile The file where the calls will be written
+     * @param population The population to be generated
+     */
+    public void saveToFile(String outputFile, Population population) {
+        saveToFile(outputFile, population, 1);
+    }
+
+    /**
+     * Generates the population using several threads and writes each person's
+     * calls to a single file, in the same order as a sequential generation.
+     * @param outputFile The file where the calls will be written
+     * @param population The population to be generated
+     * @param parallelism The number of threads generating the population
+     */
+    public void saveToFile(String outputFile, Population population, int parallelism) {
+
+        try (CsvWriter writer = new CsvWriter(Paths.get(outputFile), config)) {
+            writer.writeHeaders();
+
+            population.create(p -> {
+                try {
+                    writer.write(p);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }, parallelism);
+        } catch (IOException | UncheckedIOException ex) {
+            LOG.error("Error while writing the output file.", ex);
         }
-        row.add(c.getDestPhoneNumber());
-        row.add(c.getTime().getStart().toString(dateFormatter));
-        row.add(c.getTime().getEnd().toString(dateFormatter));
-        row.add(c.getTime().getStart().toString(timeFormatter));
-        row.add(c.getTime().getEnd().toString(timeFormatter));
-        row.add(c.getType());
-        row.add(Double.toString(c.getCost()));
-        row.add(Fraud.FAR.equals(c.getFraud()) ? "1" : "0");
-        row.add(Fraud.UNUSUAL.equals(c.getFraud()) ? "1" : "0");
-        return String.join(",", row);
     }
 
-    public void saveToFile(String outputFile, List<Person> customers) {
+    /**
+     * Writes the calls of a buffer, in the order they were added.
+     * @param outputFile The file where the calls will be written
+     * @param calls The calls
+     */
+    public void saveToFile(String outputFile, CallBuffer calls) {
 
-        try {
-            FileWriter fw = new FileWriter(outputFile);
-            String newLine = System.getProperty("line.separator");
+        try (CsvWriter writer = new CsvWriter(Paths.get(outputFile), config)) {
+            Call call = new Call();
+
+            writer.writeHeaders();
 
+            for (long i = 0; i < calls.size(); i++) {
+                writer.write(calls.getCallingNumber(i), calls.read(i, call));
+            }
+        } catch (IOException ex) {
+            LOG.error("Error while writing the output file.", ex);
+        }
+    }
 
-            boolean displayHeaders = Boolean.parseBoolean(config.getOrDefault("displayHeaders", false).toString());
+    /**
+     * Generates the population and writes the calls to a single file, with
+     * {@link #saveToFile(String, Population, int)}, to rolling parts, with
+     * {@link #saveToParts(String, Population, int)}, to date partitions, with
+     * {@link #saveToPartitions(String, Population, int)}, to buckets, with
+     * {@link #saveToBuckets(String, Population, int)}, to a single file ordered
+     * by time, with {@link #saveSorted(String, Population, int)}, or paced to
+     * wall-clock time, with {@link #replay(String, Population, int)}, as set by
+     * the <code>outputMode</code> configuration.
+     * @param name The name of the output, without the extension
+     * @param population The population to be generated
+     * @param parallelism The number of threads generating the population
+     * @return The files written
+     */
+    public List<Path> save(String name, Population population, int parallelism) {
+        String mode = (String) config.getOrDefault("outputMode", FILE_OUTPUT);
+
+        String fileName = name + ".csv" + Compression.fromConfig(config).getSuffix();
+
+        switch (mode) {
+            case FILE_OUTPUT:
+                saveToFile(fileName, population, parallelism);
+                return Collections.singletonList(Paths.get(fileName));
+            case SORTED_OUTPUT:
+                saveSorted(fileName, population, parallelism);
+                return Collections.singletonList(Paths.get(fileName));
+            case REPLAY_OUTPUT:
+                String output = (String) config.getOrDefault("replayOutput", fileName);
+                replay(output, population, parallelism);
+                return STANDARD_OUTPUT.equals(output)
+                        ? Collections.<Path>emptyList()
+                        : Collections.singletonList(Paths.get(output));
+            case PARTS_OUTPUT:
+                return saveToParts(name, population, parallelism);
+            case PARTITIONED_OUTPUT:
+                return saveToPartitions(name, population, parallelism);
+            case BUCKETED_OUTPUT:
+                return saveToBuckets(name, population, parallelism);
+            default:
+                throw new RuntimeException("Unknown output mode \"" + mode + "\"");
+        }
+    }
 
-            if (displayHeaders) {
-                fw.append(getHeaders() + newLine);
+    /**
+     * Generates the population and writes the calls to a single file in the
+     * order of their start, sorting them within a memory budget.
+     * @param outputFile The file where the calls will be written
+     * @param population The population to be generated
+     * @param parallelism The number of threads generating the population
+     * @see CallSorter
+     */
+    public void saveSorted(String outputFile, Population population, int parallelism) {
+
+        try (CallSorter sorter = new CallSorter(config)) {
+            population.create(sorter::addAll, parallelism);
+
+            try (CsvWriter writer = new CsvWriter(Paths.get(outputFile), config)) {
+                writer.writeHeaders();
+                sorter.writeTo(writer);
             }
+        } catch (IOException | UncheckedIOException ex) {
+            LOG.error("Error while writing the output file.", ex);
+        }
+    }
 
-            for (Person p : customers) {
-                for (Call c : p.getCalls()) {
-                    fw.append(getRow(p, c) + newLine);
+    /**
+     * Generates the population and writes the calls in the order of their
+     * start, paced by the <code>replayRate</code> or <code>replaySpeed</code>
+     * configuration, to a file or to the standard output, in which case the
+     * log goes to the standard error.
+     *
+     * As they are generated, the calls are split by their start in windows of
+     * <code>replayWindowDays</code> days (1 by default), each one with its own
+     * {@link CallSorter}. The replay starts once the population is generated
+     * and the first window is sorted, and each window is then sorted on a
+     * background thread while the previous one is replayed.
+     * @param output The file where the calls will be written, or "-" for the
+     *               standard output
+     * @param population The population to be generated
+     * @param parallelism The number of threads generating the population
+     * @see ReplaySink
+     */
+    public void replay(String output, Population population, int parallelism) {
+        if (STANDARD_OUTPUT.equals(output)) {
+            logToStandardError();
+        }
+
+        DateTimeDistribution dates = population.getDateTimeDistribution();
+        long start = dates.getStartDate().getMillis() / 1000;
+        int windowDays = Math.max(1, ((Number) config.getOrDefault("replayWindowDays", 1L)).intValue());
+        int windows = (dates.getDateRange() + windowDays) / windowDays;
+        long windowSeconds = windowDays * SECONDS_PER_DAY;
+
+        CallSorter[] sorters = new CallSorter[windows];
+        for (int window = 0; window < windows; window++) {
+            sorters[window] = new CallSorter(config);
+        }
+
+        ExecutorService background = Executors.newSingleThreadExecutor();
+
+        try {
+            // the first window also has the calls before the start date, and the last one those after the end
+            population.create(p -> {
+                for (Call call : p.getCalls()) {
+                    long window = Math.floorDiv(call.getStartSecond() - start, windowSeconds);
+                    sorters[(int) Math.max(0, Math.min(windows - 1, window))].add(p.getNumber(), call);
+                }
+            }, parallelism);
+
+            CsvWriter writer = STANDARD_OUTPUT.equals(output)
+                    ? new CsvWriter(Channels.newChannel(new StandardOutputStream()), config)
+                    : new CsvWriter(Paths.get(output), config);
+
+            try (ReplaySink sink = new ReplaySink(writer, config)) {
+                writer.writeHeaders();
+                Future<?> sorted = background.submit(sorters[0]::sort);
+
+                for (int window = 0; window < windows; window++) {
+                    sorted.get();
+                    if (window + 1 < windows) {
+                        sorted = background.submit(sorters[window + 1]::sort);
+                    }
+
+                    LOG.info(String.format("Replaying %d calls of window %d of %d", sorters[window].size(),
+                            window + 1, windows));
+                    sorters[window].writeTo(sink);
+                    sorters[window].close();
                 }
             }
+        } catch (IOException | UncheckedIOException ex) {
+            LOG.error("Error while replaying the calls.", ex);
+        } catch (ExecutionException ex) {
+            LOG.error("Error while sorting the calls.", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted while replaying the calls.", ex);
+        } finally {
+            // a window may still be sorted in the background
+            background.shutdown();
+            try {
+                background.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
 
-            fw.close();
-        } catch (IOException ex) {
-            LOG.error("Error while writing the output file.", ex);
+            for (CallSorter windowSorter : sorters) {
+                windowSorter.close();
+            }
+        }
+    }
+
+    /**
+     * Moves the console appenders of the log to the standard error, so that
+     * the log doesn't get mixed with the calls written to the standard output.
+     */
+    private static synchronized void logToStandardError() {
+        Enumeration<?> appenders = Logger.getRootLogger().getAllAppenders();
+
+        while (appenders.hasMoreElements()) {
+            Object appender = appenders.nextElement();
+
+            if (appender instanceof ConsoleAppender) {
+                ((ConsoleAppender) appender).setTarget(ConsoleAppender.SYSTEM_ERR);
+                ((ConsoleAppender) appender).activateOptions();
+            }
+        }
+    }
+
+    /**
+     * The standard output, which is flushed but not closed with the writer.
+     */
+    private static final class StandardOutputStream extends FilterOutputStream {
+        StandardOutputStream() {
+            super(System.out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Generates the population and writes the calls to part files of a limited
+     * size, followed by a manifest of the parts.
+     * @param prefix The path of the files, without the part number
+     * @param population The population to be generated
+     * @param parallelism The number of threads generating the population
+     * @return The parts and the manifest
+     * @see RollingWriter
+     */
+    public List<Path> saveToParts(String prefix, Population population, int parallelism) {
+        Path path = Paths.get(prefix).toAbsolutePath();
+        List<Path> files = new ArrayList<>();
+        RollingWriter writer = new RollingWriter(path.getParent(), path.getFileName().toString(), config);
+
+        try (RollingWriter w = writer) {
+            population.create(p -> {
+                try {
+                    w.write(p);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }, parallelism);
+        } catch (IOException | UncheckedIOException ex) {
+            LOG.error("Error while writing the output parts.", ex);
+        }
+
+        for (RollingWriter.Part part : writer.getParts()) {
+            files.add(part.getFile());
+        }
+        files.add(writer.getManifest());
+        return files;
+    }
+
+    /**
+     * Generates the population and writes the calls to Hive-style partitions
+     * by the date of the call, in the directory of the prefix.
+     * @param prefix The path of the files, without the partition directories
+     * @param population The population to be generated
+     * @param parallelism The number of threads generating the population
+     * @return The files written
+     * @see PartitionedWriter
+     */
+    public List<Path> saveToPartitions(String prefix, Population population, int parallelism) {
+        Path path = Paths.get(prefix).toAbsolutePath();
+        PartitionedWriter writer = new PartitionedWriter(path.getParent(), path.getFileName().toString(), config);
+
+        try (PartitionedWriter w = writer) {
+            population.create(p -> {
+                try {
+                    w.write(p);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }, parallelism);
+        } catch (IOException | UncheckedIOException ex) {
+            LOG.error("Error while writing the output partitions.", ex);
+        }
+
+        return writer.getFiles();
+    }
+
+    /**
+     * Generates the population and writes the calls to buckets by the hash of
+     * the calling number.
+     * @param prefix The path of the files, without the bucket number
+     * @param population The population to be generated
+     * @param parallelism The number of threads generating the population
+     * @return The files of the buckets
+     * @see BucketedWriter
+     */
+    public List<Path> saveToBuckets(String prefix, Population population, int parallelism) {
+        Path path = Paths.get(prefix).toAbsolutePath();
+
+        try (BucketedWriter writer = new BucketedWriter(path.getParent(), path.getFileName().toString(), config)) {
+            population.create(p -> {
+                try {
+                    writer.write(p);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }, parallelism);
+
+            return writer.getFiles();
+        } catch (IOException | UncheckedIOException ex) {
+            LOG.error("Error while writing the output buckets.", ex);
+            return Collections.emptyList();
         }
     }
 
@@ -174,6 +454,24 @@ public final class CDRGen {
             inputThreadCount.setRequired(false);
             options.addOption(inputThreadCount);
 
+            Option inputWorkers = new Option("w", "workers", true, "Number of threads generating each file, default 1");
+            inputWorkers.setRequired(false);
+            options.addOption(inputWorkers);
+
+            Option inputSeed = new Option("seed", true, "Seed of the random number generator, default: random");
+            inputSeed.setRequired(false);
+            options.addOption(inputSeed);
+
+            Option inputCompression = new Option("z", "compression", true,
+                    "Compression of the output files: none, gzip, zstd or lz4, default: none");
+            inputCompression.setRequired(false);
+            options.addOption(inputCompression);
+
+            Option inputOutputMode = new Option("o", "outputMode", true,
+                    "Output of each process: file, parts, partitioned, bucketed, sorted or replay, default: file");
+            inputOutputMode.setRequired(false);
+            options.addOption(inputOutputMode);
+
             Option inputS3Bucket = new Option("s3Bucket", true, "S3 bucket when AWS variables is setup, ");
             inputS3Bucket.setRequired(false);
             options.addOption(inputS3Bucket);
@@ -206,6 +504,22 @@ public final class CDRGen {
             return Integer.parseInt(cmd.getOptionValue("threadCount", "1"));
         }
 
+        int getWorkers() {
+            return Integer.parseInt(cmd.getOptionValue("workers", "1"));
+        }
+
+        Long getSeed() {
+            return cmd.hasOption("seed") ? Long.parseLong(cmd.getOptionValue("seed")) : null;
+        }
+
+        String getCompression() {
+            return cmd.getOptionValue("compression");
+        }
+
+        String getOutputMode() {
+            return cmd.getOptionValue("outputMode");
+        }
+
         String getS3Bucket() {
             return cmd.getOptionValue("s3Bucket");
         }
@@ -237,35 +551,68 @@ public final class CDRGen {
         String s3Bucket = cdrArgs.getS3Bucket();
         final S3Client s3 = createS3Client(s3Bucket);
 
+        Long seed = cdrArgs.getSeed();
+        // all the files share the numbering of the accounts, so that numbers are unique
+        final long numberingKey = (seed != null) ? seed : System.nanoTime();
+
         for (int i = 0; i < threadCount; i++) {
+            // each file gets its own seed, derived from the given one
+            final Long fileSeed = (seed != null) ? Rng.forStream(seed, i).nextLong() : null;
+            final int fileIndex = i;
+
             executor.execute(() -> {
-                String fileName = String.format("%s-%s.csv", cdrArgs.getPrefix(), UUID.randomUUID());
-                LOG.info(String.format("[%s] Starting: %s", Thread.currentThread().getName(), fileName));
                 CDRGen generator = new CDRGen(configFile);
 
-                Population population = new Population(generator.getConfig());
-                population.create();
+                if (cdrArgs.getCompression() != null) {
+                    generator.getConfig().put("compression", cdrArgs.getCompression());
+                }
+                if (cdrArgs.getOutputMode() != null) {
+                    generator.getConfig().put("outputMode", cdrArgs.getOutputMode());
+                }
+                if (REPLAY_OUTPUT.equals(generator.getConfig().get("outputMode"))
+                        && STANDARD_OUTPUT.equals(generator.getConfig().get("replayOutput"))) {
+                    logToStandardError();
+                }
 
-                List<Person> customers = population.getPopulation();
+                String name = String.format("%s-%s", cdrArgs.getPrefix(), UUID.randomUUID());
+                LOG.info(String.format("[%s] Starting: %s", Thread.currentThread().getName(), name));
 
-                LOG.info(String.format("[%s] Saving file: %s", Thread.currentThread().getName(), fileName));
-                generator.saveToFile(fileName, customers);
-                Path path = Paths.get(fileName);
+                if (fileSeed != null) {
+                    generator.getConfig().put("seed", fileSeed);
+                }
+
+                // each file numbers its own range of accounts
+                long numAccounts = (Long) generator.getConfig().get("numAccounts");
+                long firstAccount = ((Number) generator.getConfig().getOrDefault("firstAccount", 0L)).longValue();
+                generator.getConfig().put("firstAccount", firstAccount + fileIndex * numAccounts);
+                generator.getConfig().putIfAbsent("numberingKey", numberingKey);
+
+                Population population = new Population(generator.getConfig());
+
+                LOG.info(String.format("[%s] Saving: %s", Thread.currentThread().getName(), name));
+                List<Path> paths = generator.save(name, population, cdrArgs.getWorkers());
 
                 if (s3 != null) {
-                    try {
-                        PutObjectRequest req = PutObjectRequest.builder()
-                                .bucket(s3Bucket)
-                                .key(fileName)
-                                .build();
-                        s3.putObject(req, path);
-                    } catch (Exception e) {
-                        LOG.error("Error while sending file "+fileName+" to S3", e);
-                    } finally {
+                    Path workingDir = Paths.get("").toAbsolutePath();
+
+                    for (Path path : paths) {
+                        // partitions keep their directories in the key
+                        String fileName = workingDir.relativize(path.toAbsolutePath()).toString()
+                                .replace(File.separatorChar, '/');
                         try {
-                            java.nio.file.Files.deleteIfExists(path);
-                        } catch (IOException ignored) {
-                            LOG.info("File was not deleted: " + path);
+                            PutObjectRequest req = PutObjectRequest.builder()
+                                    .bucket(s3Bucket)
+                                    .key(fileName)
+                                    .build();
+                            s3.putObject(req, path);
+                        } catch (Exception e) {
+                            LOG.error("Error while sending file "+fileName+" to S3", e);
+                        } finally {
+                            try {
+                                java.nio.file.Files.deleteIfExists(path);
+                            } catch (IOException ignored) {
+                                LOG.info("File was not deleted: " + path);
+                            }
                         }
                     }
                 }
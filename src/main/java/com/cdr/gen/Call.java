@@ -2,45 +2,116 @@ package com.cdr.gen;
 
 import org.joda.time.Interval;
 
-import java.util.Objects;
 import java.util.UUID;
 
 /**
  * Holds information about a call.
+ *
+ * Fields are kept as primitives: the start as epoch seconds, the duration in
+ * seconds, the type as a {@link CallType} ordinal and the cell as its position
+ * in a {@link CellStore}. The Joda, String and {@link Cell} getters are views
+ * built on each call.
  * @author Maycon Viana Bordin <mayconbordin@gmail.com>
  */
 public class Call {
-    private UUID id;
-    private Cell cell;
+    private long idHigh;
+    private long idLow;
+    private CellStore cells;
+    private int cell;
     private int line;
-    private String type;
-    private Interval time;
+    private byte type;
+    // seconds since the epoch, unsigned
+    private int start;
+    private int duration;
     private double cost;
-    private String destPhoneNumber;
+    private long destNumber;
     private Fraud fraud = Fraud.NONE;
 
     public UUID getId() {
-        return id;
+        return new UUID(idHigh, idLow);
     }
 
     public void setId(UUID id) {
-        this.id = id;
+        setId(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * @param high The most significant bits of the id
+     * @param low The least significant bits of the id
+     */
+    public void setId(long high, long low) {
+        this.idHigh = high;
+        this.idLow = low;
+    }
+
+    public long getIdHigh() {
+        return idHigh;
+    }
+
+    public long getIdLow() {
+        return idLow;
     }
 
     public String getType() {
-        return type;
+        return CallType.name(type);
     }
 
     public void setType(String type) {
+        this.type = CallType.ordinal(type);
+    }
+
+    /**
+     * @return The ordinal of the type of call
+     * @see CallType
+     */
+    public byte getTypeOrdinal() {
+        return type;
+    }
+
+    public void setTypeOrdinal(byte type) {
         this.type = type;
     }
 
     public Interval getTime() {
-        return time;
+        return new Interval(getStartSecond() * 1000, getEndSecond() * 1000);
     }
 
     public void setTime(Interval time) {
-        this.time = time;
+        long startSecond = Math.floorDiv(time.getStartMillis(), 1000);
+        setTime(startSecond, (int) (Math.floorDiv(time.getEndMillis(), 1000) - startSecond));
+    }
+
+    /**
+     * @param startSecond The start of the call, in seconds since the epoch
+     * @param duration The duration of the call, in seconds
+     */
+    public void setTime(long startSecond, int duration) {
+        if (startSecond < 0 || startSecond > 0xffffffffL) {
+            throw new IllegalArgumentException("Start of the call out of range: " + startSecond);
+        }
+        this.start = (int) startSecond;
+        this.duration = duration;
+    }
+
+    /**
+     * @return The start of the call, in seconds since the epoch
+     */
+    public long getStartSecond() {
+        return Integer.toUnsignedLong(start);
+    }
+
+    /**
+     * @return The end of the call, in seconds since the epoch
+     */
+    public long getEndSecond() {
+        return getStartSecond() + duration;
+    }
+
+    /**
+     * @return The duration of the call, in seconds
+     */
+    public int getDuration() {
+        return duration;
     }
 
     public double getCost() {
@@ -60,21 +131,67 @@ public class Call {
     }
 
     public String getDestPhoneNumber() {
-        return destPhoneNumber;
+        return PhoneNumberGenerator.toString(destNumber);
     }
 
     public void setDestPhoneNumber(String destPhoneNumber) {
-        this.destPhoneNumber = destPhoneNumber;
+        this.destNumber = PhoneNumberGenerator.parse(destPhoneNumber);
+    }
+
+    /**
+     * @return The destination phone number, as a number
+     * @see PhoneNumberGenerator#toString(long)
+     */
+    public long getDestNumber() {
+        return destNumber;
+    }
+
+    public void setDestNumber(long destNumber) {
+        this.destNumber = destNumber;
     }
 
     public Cell getCell() {
-        return cell;
+        return (cells != null) ? cells.getCell(cell) : null;
     }
 
+    /**
+     * Sets the cell. Cells that don't come from a {@link CellStore} are
+     * copied to a store of their own.
+     * @param cell The cell
+     */
     public void setCell(Cell cell) {
+        if (cell == null) {
+            this.cells = null;
+        } else if (cell.getStore() != null) {
+            setCell(cell.getStore(), cell.getIndex());
+        } else {
+            setCell(CellStore.of(cell.getId(), cell.getLat(), cell.getLon()), 0);
+        }
+    }
+
+    /**
+     * @param cells The cells
+     * @param cell The position of the cell in the cells
+     */
+    public void setCell(CellStore cells, int cell) {
+        this.cells = cells;
         this.cell = cell;
     }
 
+    /**
+     * @return The cells that hold the cell of the call
+     */
+    public CellStore getCells() {
+        return cells;
+    }
+
+    /**
+     * @return The position of the cell of the call in {@link #getCells()}
+     */
+    public int getCellIndex() {
+        return cell;
+    }
+
     public Fraud getFraud() {
         return fraud;
     }
@@ -83,35 +200,50 @@ public class Call {
         this.fraud = fraud;
     }
 
+    /**
+     * Calls are equal if all their fields are, since the ids are only
+     * generated when the <code>uuid</code> column is written.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Call call = (Call) o;
-        return Objects.equals(id, call.id);
+        return idHigh == call.idHigh && idLow == call.idLow && start == call.start
+                && duration == call.duration && cells == call.cells && cell == call.cell
+                && line == call.line && type == call.type && destNumber == call.destNumber
+                && Double.compare(cost, call.cost) == 0 && fraud == call.fraud;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        int hash = Long.hashCode(idHigh ^ idLow);
+        hash = 31 * hash + start;
+        hash = 31 * hash + duration;
+        hash = 31 * hash + cell;
+        hash = 31 * hash + Long.hashCode(destNumber);
+        return hash;
     }
 
     public Call copy() {
         Call c = new Call();
-        c.id = id;
+        c.idHigh = idHigh;
+        c.idLow = idLow;
+        c.cells = cells;
         c.cell = cell;
         c.line = line;
         c.type = type;
-        c.time = time;
+        c.start = start;
+        c.duration = duration;
         c.cost = cost;
-        c.destPhoneNumber = destPhoneNumber;
+        c.destNumber = destNumber;
         c.fraud = fraud;
         return c;
     }
 
     public Call copyWithId(UUID id) {
         Call c = copy();
-        c.id = id;
+        c.setId(id);
         return c;
     }
 }
@@ -0,0 +1,281 @@
+package com.cdr.gen;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only store of calls kept off the heap, so that holding billions of
+ * calls doesn't put any pressure on the garbage collector.
+ *
+ * Calls are stored by columns in fixed-size segments, each one a memory-mapped
+ * region of a temporary file that is deleted when the buffer is closed, in the
+ * temporary directory unless another one is given. The pages of the file can
+ * be written back by the OS under memory pressure, so the buffer can hold more
+ * calls than there is memory. Segments can also be direct buffers, which are
+ * faster but count against <code>-XX:MaxDirectMemorySize</code> (the maximum
+ * heap size by default), beyond which allocating a segment fails with an
+ * {@link OutOfMemoryError}. Segments are freed when the buffer is closed.
+ *
+ * Calls are read back into a reusable {@link Call}, together with the number
+ * of the person who made them.
+ *
+ * All the calls must have their cell in the same {@link CellStore}. Instances
+ * are not thread-safe.
+ */
+public class CallBuffer implements AutoCloseable {
+    private static final int DEFAULT_SEGMENT_CALLS = 1 << 16;
+    private static final Fraud[] FRAUDS = Fraud.values();
+
+    // frees a direct or mapped buffer right away, where the JVM allows it
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // before Java 9 the buffers are freed by the garbage collector
+        }
+
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    // the columns, in the order they are laid out in a segment
+    private static final int[] WIDTHS = {8, 8, 8, 8, 8, 4, 4, 4, 4, 1, 1};
+    private static final int CALLING_NUMBER = 0;
+    private static final int ID_HIGH = 1;
+    private static final int ID_LOW = 2;
+    private static final int DEST_NUMBER = 3;
+    private static final int COST = 4;
+    private static final int START = 5;
+    private static final int DURATION = 6;
+    private static final int LINE = 7;
+    private static final int CELL = 8;
+    private static final int TYPE = 9;
+    private static final int FRAUD = 10;
+
+    private final CellStore cells;
+    private final int segmentCalls;
+    private final int[] columnOffsets = new int[WIDTHS.length];
+    private final int segmentBytes;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private final Path spillFile;
+    private final FileChannel spillChannel;
+    private long size;
+
+    /**
+     * Creates a buffer backed by a file in the temporary directory.
+     * @param cells The cells of the calls
+     */
+    public CallBuffer(CellStore cells) {
+        this(cells, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param cells The cells of the calls
+     * @param spillDir The directory of the file backing the buffer, or null to
+     *                 use direct memory
+     */
+    public CallBuffer(CellStore cells, Path spillDir) {
+        this(cells, spillDir, DEFAULT_SEGMENT_CALLS);
+    }
+
+    CallBuffer(CellStore cells, Path spillDir, int segmentCalls) {
+        this.cells = cells;
+        this.segmentCalls = segmentCalls;
+
+        int offset = 0;
+        for (int i = 0; i < WIDTHS.length; i++) {
+            columnOffsets[i] = offset;
+            offset += WIDTHS[i] * segmentCalls;
+        }
+        this.segmentBytes = offset;
+
+        if (spillDir != null) {
+            try {
+                spillFile = Files.createTempFile(spillDir, "calls-", ".buf");
+                spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Unable to create a call buffer in " + spillDir, ex);
+            }
+        } else {
+            spillFile = null;
+            spillChannel = null;
+        }
+    }
+
+    /**
+     * Appends all the calls of a person.
+     * @param p The person
+     */
+    public void addAll(Person p) {
+        for (Call call : p.getCalls()) {
+            add(p.getNumber(), call);
+        }
+    }
+
+    /**
+     * Appends a call.
+     * @param callingNumber The number of the person who made the call
+     * @param call The call
+     */
+    public void add(long callingNumber, Call call) {
+        if (call.getCells() != cells) {
+            throw new IllegalArgumentException("The cell of the call is not in the cells of the buffer");
+        }
+
+        int pos = (int) (size % segmentCalls);
+        int index = (int) (size / segmentCalls);
+        if (index == segments.size()) {
+            segments.add(allocate(index));
+        }
+
+        ByteBuffer segment = segments.get(index);
+        segment.putLong(columnOffsets[CALLING_NUMBER] + pos * 8, callingNumber);
+        segment.putLong(columnOffsets[ID_HIGH] + pos * 8, call.getIdHigh());
+        segment.putLong(columnOffsets[ID_LOW] + pos * 8, call.getIdLow());
+        segment.putLong(columnOffsets[DEST_NUMBER] + pos * 8, call.getDestNumber());
+        segment.putDouble(columnOffsets[COST] + pos * 8, call.getCost());
+        segment.putInt(columnOffsets[START] + pos * 4, (int) call.getStartSecond());
+        segment.putInt(columnOffsets[DURATION] + pos * 4, call.getDuration());
+        segment.putInt(columnOffsets[LINE] + pos * 4, call.getLine());
+        segment.putInt(columnOffsets[CELL] + pos * 4, call.getCellIndex());
+        segment.put(columnOffsets[TYPE] + pos, call.getTypeOrdinal());
+        segment.put(columnOffsets[FRAUD] + pos, (byte) call.getFraud().ordinal());
+        size++;
+    }
+
+    private ByteBuffer allocate(int segment) {
+        if (spillChannel == null) {
+            return ByteBuffer.allocateDirect(segmentBytes);
+        }
+
+        try {
+            return spillChannel.map(FileChannel.MapMode.READ_WRITE, (long) segment * segmentBytes, segmentBytes);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Unable to grow the call buffer " + spillFile, ex);
+        }
+    }
+
+    /**
+     * @return The cells of the calls
+     */
+    public CellStore getCells() {
+        return cells;
+    }
+
+    /**
+     * @return The number of calls
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @param index The position of the call
+     * @return The number of the person who made the call
+     */
+    public long getCallingNumber(long index) {
+        return segment(index).getLong(columnOffsets[CALLING_NUMBER] + position(index) * 8);
+    }
+
+    /**
+     * @param index The position of the call
+     * @return The start of the call, in seconds since the epoch
+     */
+    public long getStartSecond(long index) {
+        return Integer.toUnsignedLong(segment(index).getInt(columnOffsets[START] + position(index) * 4));
+    }
+
+    /**
+     * Reads a call.
+     * @param index The position of the call
+     * @param call The call that receives the fields, which can be reused
+     * @return The given call
+     */
+    public Call read(long index, Call call) {
+        ByteBuffer segment = segment(index);
+        int pos = position(index);
+
+        call.setId(segment.getLong(columnOffsets[ID_HIGH] + pos * 8),
+                segment.getLong(columnOffsets[ID_LOW] + pos * 8));
+        call.setDestNumber(segment.getLong(columnOffsets[DEST_NUMBER] + pos * 8));
+        call.setCost(segment.getDouble(columnOffsets[COST] + pos * 8));
+        call.setTime(Integer.toUnsignedLong(segment.getInt(columnOffsets[START] + pos * 4)),
+                segment.getInt(columnOffsets[DURATION] + pos * 4));
+        call.setLine(segment.getInt(columnOffsets[LINE] + pos * 4));
+        call.setCell(cells, segment.getInt(columnOffsets[CELL] + pos * 4));
+        call.setTypeOrdinal(segment.get(columnOffsets[TYPE] + pos));
+        call.setFraud(FRAUDS[segment.get(columnOffsets[FRAUD] + pos)]);
+        return call;
+    }
+
+    private ByteBuffer segment(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Call " + index + " of " + size);
+        }
+        return segments.get((int) (index / segmentCalls));
+    }
+
+    private int position(long index) {
+        return (int) (index % segmentCalls);
+    }
+
+    /**
+     * Removes all the calls, keeping the memory to hold as many calls again.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Frees the segments and deletes the spill file, if any.
+     */
+    @Override
+    public void close() {
+        for (ByteBuffer segment : segments) {
+            free(segment);
+        }
+        segments.clear();
+        size = 0;
+
+        if (spillChannel != null) {
+            try {
+                spillChannel.close();
+                Files.deleteIfExists(spillFile);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Unable to delete the call buffer " + spillFile, ex);
+            }
+        }
+    }
+
+    private static void free(ByteBuffer segment) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, segment);
+        } catch (ReflectiveOperationException ex) {
+            // left to the garbage collector
+        }
+    }
+}
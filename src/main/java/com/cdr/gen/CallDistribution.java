@@ -4,7 +4,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+
+import com.cdr.gen.util.AliasSampler;
+import com.cdr.gen.util.Rng;
 
 /**
  * Used mainly for obtaining a random phone call type given the probabilities
@@ -15,11 +17,10 @@ public class CallDistribution {
     private Map<String, Double> weigths;
     private List<String> weigthKeys;
     private List<Double> weigthVals;
+    private AliasSampler sampler;
     
     private List<String> callTypes;
     private Map<String, Object> outgoingCallParams;
-    
-    private Random random;
 
     public CallDistribution(Map<String, Object> config) {
         callTypes = (List<String>) config.get("callTypes");
@@ -35,28 +36,28 @@ public class CallDistribution {
             weigthKeys.add(callType);
             weigthVals.add((Double) params.get("callProb"));
         }
-        
-        random = new Random(System.currentTimeMillis());
+
+        double[] vals = new double[weigthVals.size()];
+        for (int i = 0; i < vals.length; i++) {
+            vals[i] = weigthVals.get(i);
+        }
+        sampler = new AliasSampler(vals);
     }
     
     /**
+     * @param rng The random number generator
      * @return A randomly selected phone call type
      */
-    public String getRandomCallType() {
-        double tmpRnd = 1;
+    public String getRandomCallType(Rng rng) {
+        return getKey(getRandomCallTypeIndex(rng));
+    }
 
-        while (tmpRnd > 0) {
-            tmpRnd = random.nextDouble();
-            for (int k = 0; k < size(); k++) {
-                if (tmpRnd - getVal(k) > 0) {
-                    tmpRnd = tmpRnd - getVal(k);
-                } else {
-                    return getKey(k);
-                }
-            }
-        }
-        
-        return null;
+    /**
+     * @param rng The random number generator
+     * @return The index, in {@link #getKeys()}, of a randomly selected phone call type
+     */
+    public int getRandomCallTypeIndex(Rng rng) {
+        return sampler.next(rng);
     }
     
     public int size() {
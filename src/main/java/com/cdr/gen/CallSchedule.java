@@ -0,0 +1,184 @@
+package com.cdr.gen;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the minutes already taken by the calls of a person, as a bitmap over
+ * a range of minutes, so that checking and adding a call only touches the
+ * words of the minutes it takes. Minutes outside the range are always free.
+ *
+ * A call taking zero minutes still takes the minute in which it starts.
+ * Instances can be reused for several persons with {@link #clear()}.
+ */
+public class CallSchedule {
+    /** The start returned when no interval fits */
+    public static final int NONE = Integer.MIN_VALUE;
+
+    private final int firstMinute;
+    private final int lastMinute;
+    private final long[] words;
+    private int size;
+    // the words that may have bits set
+    private int firstWord;
+    private int lastWord = -1;
+
+    /**
+     * @param firstMinute The first minute of the range
+     * @param lastMinute The minute after the end of the range
+     */
+    public CallSchedule(int firstMinute, int lastMinute) {
+        if (lastMinute <= firstMinute) {
+            throw new IllegalArgumentException("Invalid range of minutes: " + firstMinute + " to " + lastMinute);
+        }
+
+        this.firstMinute = firstMinute;
+        this.lastMinute = lastMinute;
+        this.words = new long[((lastMinute - firstMinute) + 63) >>> 6];
+        this.firstWord = words.length;
+    }
+
+    /**
+     * Checks if a time interval overlaps any interval already in the schedule.
+     * @param start The start of the interval, in minutes
+     * @param duration The duration of the interval, in minutes
+     * @return True if the interval overlaps or False otherwise
+     */
+    public boolean overlaps(int start, int duration) {
+        int from = Math.max(start, firstMinute) - firstMinute;
+        int to = Math.min(start + Math.max(duration, 1), lastMinute) - firstMinute;
+
+        return from < to && nextTaken(from, to) < to;
+    }
+
+    /**
+     * Adds a time interval to the schedule, if it doesn't overlap any other interval.
+     * @param start The start of the interval, in minutes
+     * @param duration The duration of the interval, in minutes
+     * @return True if the interval was added or False if it overlaps another interval
+     */
+    public boolean add(int start, int duration) {
+        if (overlaps(start, duration)) {
+            return false;
+        }
+
+        int from = Math.max(start, firstMinute) - firstMinute;
+        int to = Math.min(start + Math.max(duration, 1), lastMinute) - firstMinute;
+
+        for (int bit = from; bit < to; ) {
+            int word = bit >>> 6;
+            int end = Math.min(to, (word + 1) << 6);
+            long mask = (end - bit == 64) ? -1L : ((1L << (end - bit)) - 1) << bit;
+
+            words[word] |= mask;
+            firstWord = Math.min(firstWord, word);
+            lastWord = Math.max(lastWord, word);
+            bit = end;
+        }
+
+        size++;
+        return true;
+    }
+
+    /**
+     * Finds the start in <code>[from, to)</code> nearest to a target where an
+     * interval of the given duration doesn't overlap any other interval. Of two
+     * starts as near, the earlier one is picked.
+     * @param target The preferred start, in minutes
+     * @param from The earliest start, in minutes
+     * @param to The minute after the latest start
+     * @param duration The duration of the interval, in minutes
+     * @return The start of the free interval, in minutes, or {@link #NONE} if no
+     *         interval fits
+     */
+    public int findNearest(int target, int from, int to, int duration) {
+        int length = Math.max(duration, 1);
+        long best = NONE;
+
+        // free intervals before and after the range of the schedule are unbounded,
+        // and the one holding the first start is only looked at from there
+        long gapStart = Long.MIN_VALUE;
+        int bits = lastMinute - firstMinute;
+        int bit = (int) Math.max(0, Math.min(bits, (long) from - firstMinute));
+
+        while (true) {
+            int taken = nextTaken(bit, bits);
+            long gapEnd = (taken < bits) ? (long) taken + firstMinute : Long.MAX_VALUE;
+
+            // the starts of the gap where the interval fits, and the nearest one
+            long low = Math.max(from, gapStart);
+            long high = Math.min(to - 1L, gapEnd - length);
+
+            if (high >= low) {
+                long start = Math.max(low, Math.min(high, target));
+                if (best == NONE || Math.abs(start - target) < Math.abs(best - target)) {
+                    best = start;
+                }
+            }
+
+            // the starts of the next gaps are all further from the target
+            if (taken >= bits || gapEnd >= to || (high >= low && high >= target)) {
+                return (int) best;
+            }
+
+            bit = nextFree(taken, bits);
+            gapStart = (long) bit + firstMinute;
+        }
+    }
+
+    /**
+     * @return The first taken bit in <code>[from, to)</code>, or <code>to</code>
+     */
+    private int nextTaken(int from, int to) {
+        int word = from >>> 6;
+        if (word > lastWord) {
+            return to;
+        }
+
+        long bits = words[word] & (-1L << from);
+
+        while (bits == 0) {
+            if (++word > lastWord || word << 6 >= to) {
+                return to;
+            }
+            bits = words[word];
+        }
+
+        return Math.min(to, (word << 6) + Long.numberOfTrailingZeros(bits));
+    }
+
+    /**
+     * @return The first free bit in <code>[from, to)</code>, or <code>to</code>
+     */
+    private int nextFree(int from, int to) {
+        int word = from >>> 6;
+        long bits = ~words[word] & (-1L << from);
+
+        while (bits == 0) {
+            if (++word >= words.length || word << 6 >= to) {
+                return to;
+            }
+            bits = ~words[word];
+        }
+
+        return Math.min(to, (word << 6) + Long.numberOfTrailingZeros(bits));
+    }
+
+    /**
+     * Removes all the intervals.
+     */
+    public void clear() {
+        if (lastWord >= firstWord) {
+            Arrays.fill(words, firstWord, lastWord + 1, 0L);
+        }
+        firstWord = words.length;
+        lastWord = -1;
+        size = 0;
+    }
+
+    /**
+     * @return The number of intervals in the schedule
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,17 @@
+package com.cdr.gen;
+
+import java.io.IOException;
+
+/**
+ * Receives calls, together with the number of the person who made them, one
+ * at a time. The call may be reused once the method returns.
+ */
+public interface CallSink {
+
+    /**
+     * @param callingNumber The number of the person who made the call
+     * @param call The call
+     * @throws IOException If the call can't be written
+     */
+    void write(long callingNumber, Call call) throws IOException;
+}
@@ -0,0 +1,246 @@
+package com.cdr.gen;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorts calls by start time, within a memory budget of
+ * <code>sortBufferCalls</code> calls (4M by default, about 240 MB).
+ *
+ * Calls are gathered in a {@link CallBuffer} and, whenever it is full, sorted
+ * and spilled as a run. The buffer and the runs are memory-mapped temporary
+ * files in <code>sortSpillDir</code> (the temporary directory by default).
+ * The runs and the last buffer are then merged with a heap. Calls with the
+ * same start keep the order they were added in.
+ *
+ * Instances are not thread-safe.
+ */
+public class CallSorter implements AutoCloseable {
+    private static final int DEFAULT_BUFFER_CALLS = 1 << 22;
+    private static final long INDEX_MASK = 0xffffffffL;
+
+    private final int bufferCalls;
+    private final Path spillDir;
+    private final List<CallBuffer> runs = new ArrayList<>();
+    private CallBuffer buffer;
+    private long[] keys;
+    // the calls of the buffer in the order of the keys, or -1 if it must be sorted
+    private int sortedCount = -1;
+    private long size;
+
+    /**
+     * @param config The configuration
+     */
+    public CallSorter(Map<String, Object> config) {
+        this.bufferCalls = ((Number) config.getOrDefault("sortBufferCalls", (long) DEFAULT_BUFFER_CALLS)).intValue();
+        this.spillDir = Paths.get((String) config.getOrDefault("sortSpillDir", System.getProperty("java.io.tmpdir")));
+
+        if (bufferCalls < 1) {
+            throw new RuntimeException("The sort buffer must hold at least one call");
+        }
+    }
+
+    /**
+     * Adds all the calls of a person.
+     * @param p The person
+     */
+    public void addAll(Person p) {
+        for (Call call : p.getCalls()) {
+            add(p.getNumber(), call);
+        }
+    }
+
+    /**
+     * Adds a call.
+     * @param callingNumber The number of the person who made the call
+     * @param call The call
+     */
+    public void add(long callingNumber, Call call) {
+        if (buffer == null) {
+            buffer = new CallBuffer(call.getCells(), spillDir);
+        } else if (buffer.size() == bufferCalls) {
+            spill();
+        }
+
+        buffer.add(callingNumber, call);
+        sortedCount = -1;
+        size++;
+    }
+
+    /**
+     * @return The number of calls added
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Sorts the calls that are not spilled yet, which is otherwise done when
+     * they are written, so that it can be done ahead on another thread.
+     */
+    public void sort() {
+        if (sortedCount < 0) {
+            sortedCount = sortBuffer();
+        }
+    }
+
+    /**
+     * Writes the sorted buffer as a new run and clears the buffer.
+     */
+    private void spill() {
+        int count = sortBuffer();
+        CallBuffer run = new CallBuffer(buffer.getCells(), spillDir);
+        Call call = new Call();
+
+        for (int i = 0; i < count; i++) {
+            long index = keys[i] & INDEX_MASK;
+            run.add(buffer.getCallingNumber(index), buffer.read(index, call));
+        }
+
+        runs.add(run);
+        buffer.clear();
+        // sorters of several windows may be filled at the same time, so the keys are not kept
+        keys = null;
+    }
+
+    /**
+     * Sorts the positions of the calls of the buffer by start time, into the
+     * lower bits of the keys, with the start time relative to the earliest one
+     * in the upper bits.
+     * @return The number of calls of the buffer
+     */
+    private int sortBuffer() {
+        int count = (buffer != null) ? (int) buffer.size() : 0;
+
+        if (keys == null || keys.length < count) {
+            keys = new long[count];
+        }
+
+        long base = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            base = Math.min(base, buffer.getStartSecond(i));
+        }
+
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((buffer.getStartSecond(i) - base) << 32) | i;
+        }
+
+        Arrays.sort(keys, 0, count);
+        return count;
+    }
+
+    /**
+     * Writes all the calls in the order of their start. Calls can't be added
+     * afterwards.
+     * @param sink The receiver of the calls
+     * @throws IOException If the sink fails
+     */
+    public void writeTo(CallSink sink) throws IOException {
+        sort();
+        int count = sortedCount;
+        Call call = new Call();
+
+        if (runs.isEmpty()) {
+            for (int i = 0; i < count; i++) {
+                long index = keys[i] & INDEX_MASK;
+                sink.write(buffer.getCallingNumber(index), buffer.read(index, call));
+            }
+            return;
+        }
+
+        // the spilled runs and, last, the buffer, which is read through the keys
+        int sources = runs.size() + 1;
+        long[] positions = new long[sources];
+        long[] ends = new long[sources];
+        long[] starts = new long[sources];
+        int[] heap = new int[sources];
+        int heapSize = 0;
+
+        for (int source = 0; source < sources; source++) {
+            ends[source] = (source < runs.size()) ? runs.get(source).size() : count;
+
+            if (ends[source] > 0) {
+                starts[source] = getStartSecond(source, 0);
+                heap[heapSize++] = source;
+            }
+        }
+
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(heap, heapSize, i, starts);
+        }
+
+        while (heapSize > 0) {
+            int source = heap[0];
+            long index = getIndex(source, positions[source]);
+            CallBuffer calls = (source < runs.size()) ? runs.get(source) : buffer;
+
+            sink.write(calls.getCallingNumber(index), calls.read(index, call));
+
+            if (++positions[source] < ends[source]) {
+                starts[source] = getStartSecond(source, positions[source]);
+            } else {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(heap, heapSize, 0, starts);
+        }
+    }
+
+    private long getIndex(int source, long position) {
+        return (source < runs.size()) ? position : keys[(int) position] & INDEX_MASK;
+    }
+
+    private long getStartSecond(int source, long position) {
+        CallBuffer calls = (source < runs.size()) ? runs.get(source) : buffer;
+        return calls.getStartSecond(getIndex(source, position));
+    }
+
+    /**
+     * Moves a source down the heap, ordered by start time and then by source,
+     * so that calls with the same start keep their order.
+     */
+    private static void siftDown(int[] heap, int heapSize, int pos, long[] starts) {
+        int source = heap[pos];
+
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && isBefore(heap[child + 1], heap[child], starts)) {
+                child++;
+            }
+            if (!isBefore(heap[child], source, starts)) {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
+        }
+
+        heap[pos] = source;
+    }
+
+    private static boolean isBefore(int source, int other, long[] starts) {
+        return starts[source] < starts[other] || (starts[source] == starts[other] && source < other);
+    }
+
+    /**
+     * Releases the buffer and deletes the runs.
+     */
+    @Override
+    public void close() {
+        if (buffer != null) {
+            buffer.close();
+        }
+        for (CallBuffer run : runs) {
+            run.close();
+        }
+        runs.clear();
+        buffer = null;
+        keys = null;
+    }
+}
@@ -0,0 +1,60 @@
+package com.cdr.gen;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of the names of the types of call, so that a call keeps the type
+ * as a single byte. A name gets an ordinal the first time it is seen and keeps
+ * it for the life of the JVM.
+ */
+public final class CallType {
+    private static final int MAX_TYPES = 128;
+    private static final Map<String, Integer> ORDINALS = new HashMap<>();
+    private static volatile String[] names = new String[0];
+
+    private CallType() {
+    }
+
+    /**
+     * @param name The name of the type of call
+     * @return The ordinal of the type of call
+     */
+    public static byte ordinal(String name) {
+        String[] current = names;
+
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].equals(name)) {
+                return (byte) i;
+            }
+        }
+
+        synchronized (ORDINALS) {
+            Integer ordinal = ORDINALS.get(name);
+
+            if (ordinal == null) {
+                if (names.length == MAX_TYPES) {
+                    throw new RuntimeException("Too many types of call, at most " + MAX_TYPES + " are supported");
+                }
+
+                ordinal = names.length;
+                ORDINALS.put(name, ordinal);
+
+                String[] updated = Arrays.copyOf(names, ordinal + 1);
+                updated[ordinal] = name;
+                names = updated;
+            }
+
+            return ordinal.byteValue();
+        }
+    }
+
+    /**
+     * @param ordinal The ordinal of the type of call
+     * @return The name of the type of call
+     */
+    public static String name(int ordinal) {
+        return names[ordinal];
+    }
+}
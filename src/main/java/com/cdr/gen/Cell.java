@@ -1,11 +1,17 @@
 package com.cdr.gen;
 
 public class Cell {
+    /** Radius of the earth, in meters */
+    public static final double EARTH_RADIUS = 6371 * 1000;
 
     private String id;
     private double lat;
     private double lon;
 
+    // set for the views of a cell store
+    private CellStore store;
+    private int index;
+
     public Cell() {
     }
 
@@ -15,12 +21,34 @@ public class Cell {
         this.lon = lon;
     }
 
+    Cell(CellStore store, int index) {
+        this(store.getId(index), store.getLat(index), store.getLon(index));
+        this.store = store;
+        this.index = index;
+    }
+
+    /**
+     * @return The store the cell was read from, or null if the cell was
+     *         created or changed since
+     */
+    public CellStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return The position of the cell in its store
+     */
+    public int getIndex() {
+        return index;
+    }
+
     public String getId() {
         return id;
     }
 
     public void setId(String id) {
         this.id = id;
+        this.store = null;
     }
 
     public double getLat() {
@@ -29,6 +57,7 @@ public class Cell {
 
     public void setLat(double lat) {
         this.lat = lat;
+        this.store = null;
     }
 
     public double getLon() {
@@ -37,18 +66,23 @@ public class Cell {
 
     public void setLon(double lon) {
         this.lon = lon;
+        this.store = null;
     }
 
     public double distance(Cell cell) {
-        final int R = 6371; // Radius of the earth
-        
-        double latDistance = Math.toRadians(this.lat - cell.lat);
-        double lonDistance = Math.toRadians(this.lon - cell.lon);
+        return distance(this.lat, this.lon, cell.lat, cell.lon);
+    }
+
+    /**
+     * @return The distance, in meters, between two points given by their latitude and longitude
+     */
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat1 - lat2);
+        double lonDistance = Math.toRadians(lon1 - lon2);
         double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(cell.lat)) * Math.cos(Math.toRadians(this.lat))
+                + Math.cos(Math.toRadians(lat2)) * Math.cos(Math.toRadians(lat1))
                 * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
         double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c * 1000; // convert to meters
-
+        return EARTH_RADIUS * c;
     }
 }
@@ -1,71 +1,51 @@
 package com.cdr.gen;
 
-import com.cdr.gen.util.IOUtils;
-import com.cdr.gen.util.JavaUtils;
 import com.cdr.gen.util.RandomUtil;
-import org.apache.log4j.Logger;
-import org.supercsv.io.CsvListReader;
-import org.supercsv.io.ICsvListReader;
-import org.supercsv.prefs.CsvPreference;
+import com.cdr.gen.util.Rng;
 
-import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Map;
 
 public class CellDistribution {
 
-    private static final Logger LOG = Logger.getLogger(CellDistribution.class);
-    private static final String CELL_DIST_CSV = "/cell_dist.csv";
-    private static final List<Cell> CELLS = new ArrayList<>();
-
-    static {
-        try {
-            LOG.info("Loading cell files.");
-            ICsvListReader listReader;
-
-            if (JavaUtils.isJar()) {
-                InputStream is = CellDistribution.class.getResourceAsStream(CELL_DIST_CSV);
-                listReader = new CsvListReader(
-                        new StringReader(IOUtils.convertStreamToString(is)),
-                        CsvPreference.EXCEL_NORTH_EUROPE_PREFERENCE);
-            } else {
-                listReader = new CsvListReader(
-                        new FileReader("src/main/resources" + CELL_DIST_CSV),
-                        CsvPreference.EXCEL_NORTH_EUROPE_PREFERENCE);
-            }
-
-            listReader.getHeader(true);
-
-            List<String> cellList;
-            while ((cellList = listReader.read()) != null) {
-                String cellId = cellList.get(0);
-                String latStr = cellList.get(1);
-                String lonStr = cellList.get(2);
-
-                CELLS.add(new Cell(
-                        cellId,
-                        Double.parseDouble(latStr),
-                        Double.parseDouble(lonStr))
-                );
-            }
-
-            listReader.close();
-        } catch (FileNotFoundException e) {
-            LOG.error("Unable to find cell file.", e);
-        } catch (IOException e) {
-            LOG.error("Error while reading the cell file.", e);
-        }
+    private final CellStore cells;
+
+    /**
+     * Uses the cells of the default cell file.
+     */
+    public CellDistribution() {
+        this(CellStore.getDefault());
+    }
+
+    /**
+     * Uses the cells of the <code>cellDistFile</code> configuration, if present,
+     * or of the default cell file otherwise.
+     *
+     * @param config The configuration
+     */
+    public CellDistribution(Map<String, Object> config) {
+        this(CellStore.get((String) config.getOrDefault("cellDistFile", CellStore.CELL_DIST_CSV)));
+    }
+
+    public CellDistribution(CellStore cells) {
+        this.cells = cells;
     }
 
     /**
      * Returns a randomly picked cell;
      *
+     * @param rng The random number generator
      * @return The cell
      */
-    public Cell getRandomCell() {
-        int position = RandomUtil.randInt(0, CELLS.size() - 1);
-        return CELLS.get(position);
+    public Cell getRandomCell(Rng rng) {
+        return cells.getCell(getRandomCellIndex(rng));
+    }
+
+    /**
+     * @param rng The random number generator
+     * @return The position of a randomly picked cell in the {@link CellStore}
+     */
+    public int getRandomCellIndex(Rng rng) {
+        return RandomUtil.randInt(0, cells.size() - 1, rng);
     }
 
     /**
@@ -73,23 +53,48 @@ public class CellDistribution {
      *
      * @param cellId              Given cell ID
      * @param minDistanceInMeters Minimum distance
+     * @param rng                 The random number generator
      * @return The cell
      */
-    public Cell getRandomCell(String cellId, double minDistanceInMeters) {
-        Cell cell = getCellById(cellId);
-
-        return CELLS.stream()
-                .filter(c -> c.distance(cell) >= minDistanceInMeters)
-                .sorted((a, b) -> ThreadLocalRandom.current().nextInt(-1, 2))
-                .findAny()
-                .orElseThrow(() -> new RuntimeException("No cell distant " + minDistanceInMeters + "m of " + cellId + ""));
+    public Cell getRandomCell(String cellId, double minDistanceInMeters, Rng rng) {
+        return cells.getCell(getRandomCellIndex(getCellIndex(cellId), minDistanceInMeters, rng));
+    }
+
+    /**
+     * Returns the position of a randomly picked cell with {@param minDistanceInMeters}
+     * from the cell at the given position.
+     *
+     * @param cell                The position of the cell in the {@link CellStore}
+     * @param minDistanceInMeters Minimum distance
+     * @param rng                 The random number generator
+     * @return The position of the picked cell
+     */
+    public int getRandomCellIndex(int cell, double minDistanceInMeters, Rng rng) {
+        int position = cells.getSpatialIndex().getRandomFarCell(cell, minDistanceInMeters, rng);
+
+        if (position < 0) {
+            throw new RuntimeException("No cell distant " + minDistanceInMeters + "m of " + cells.getId(cell) + "");
+        }
+
+        return position;
     }
 
     public Cell getCellById(String cellId) {
-        return CELLS.stream()
-                .filter(c -> c.getId().equals(cellId))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("No cell found with ID \"" + cellId + "\""));
+        return cells.getCell(getCellIndex(cellId));
+    }
+
+    private int getCellIndex(String cellId) {
+        int position = cells.indexOf(cellId);
+
+        if (position < 0) {
+            throw new RuntimeException("No cell found with ID \"" + cellId + "\"");
+        }
+
+        return position;
+    }
+
+    public CellStore getCells() {
+        return cells;
     }
 
 }
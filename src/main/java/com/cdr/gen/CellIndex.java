@@ -0,0 +1,256 @@
+package com.cdr.gen;
+
+import com.cdr.gen.util.Rng;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Spatial index over the position of the cells, used to pick a random cell
+ * at least a given distance away from another cell without computing the
+ * distance to every cell.
+ *
+ * Cells are put in a grid of latitude/longitude buckets. The cells closer than
+ * a given distance to a cell are found by looking only at the buckets around
+ * it. For each cell and distance, the smaller of the near and far sets is
+ * cached as a sorted array, and the least recently used sets are evicted when
+ * the cache holds more than 16M cells. A far cell is then drawn uniformly,
+ * either from the far set or by picking a random rank among the cells that
+ * are not in the near set.
+ *
+ * Instances are thread-safe.
+ */
+public class CellIndex {
+    private static final double METERS_PER_DEGREE = Cell.EARTH_RADIUS * Math.PI / 180;
+    private static final int CELLS_PER_BUCKET = 8;
+    private static final long MAX_CACHED_CELLS = 16 * 1024 * 1024;
+
+    private final double[] lats;
+    private final double[] lons;
+
+    private final double minLat;
+    private final double minLon;
+    private final double bucketSize;
+    private final int rows;
+    private final int cols;
+    private final int[] bucketStart;
+    private final int[] bucketCells;
+
+    // guarded by itself, in access order so that the eldest set is the least recently used
+    private final LinkedHashMap<Long, CellSet> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedCells;
+
+    /**
+     * @param lats The latitude of each cell
+     * @param lons The longitude of each cell
+     */
+    public CellIndex(double[] lats, double[] lons) {
+        this.lats = lats;
+        this.lons = lons;
+
+        int n = lats.length;
+        double minLat = 90, maxLat = -90, minLon = 180, maxLon = -180;
+
+        for (int i=0; i<n; i++) {
+            minLat = Math.min(minLat, lats[i]);
+            maxLat = Math.max(maxLat, lats[i]);
+            minLon = Math.min(minLon, lons[i]);
+            maxLon = Math.max(maxLon, lons[i]);
+        }
+
+        if (n == 0) {
+            minLat = maxLat = minLon = maxLon = 0;
+        }
+
+        double area = (maxLat - minLat) * (maxLon - minLon);
+        double buckets = Math.max(1.0, (double) n / CELLS_PER_BUCKET);
+        double size = Math.sqrt(area / buckets);
+
+        this.minLat = minLat;
+        this.minLon = minLon;
+        this.bucketSize = (size > 1e-3) ? size : Math.max(1e-3, Math.max(maxLat - minLat, maxLon - minLon));
+        this.rows = (int) ((maxLat - minLat) / bucketSize) + 1;
+        this.cols = (int) ((maxLon - minLon) / bucketSize) + 1;
+
+        // cells of each bucket, stored contiguously
+        bucketStart = new int[rows * cols + 1];
+        bucketCells = new int[n];
+
+        for (int i=0; i<n; i++) {
+            bucketStart[bucket(i) + 1]++;
+        }
+        for (int b=0; b<rows * cols; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+
+        int[] next = Arrays.copyOf(bucketStart, rows * cols);
+        for (int i=0; i<n; i++) {
+            bucketCells[next[bucket(i)]++] = i;
+        }
+    }
+
+    /**
+     * Picks a random cell at least the given distance away from a cell.
+     * @param cell The index of the cell
+     * @param minDistanceInMeters The minimum distance
+     * @param rng The random number generator
+     * @return The index of the picked cell, or -1 if there is no cell that far
+     */
+    public int getRandomFarCell(int cell, double minDistanceInMeters, Rng rng) {
+        CellSet set = getCellSet(cell, minDistanceInMeters);
+        int farCount = set.far ? set.cells.length : lats.length - set.cells.length;
+
+        if (farCount <= 0) {
+            return -1;
+        }
+
+        int rank = rng.nextInt(farCount);
+        if (set.far) {
+            return set.cells[rank];
+        }
+
+        // the rank-th cell that isn't near: skip the near cells before it
+        int[] near = set.cells;
+        int low = 0, high = near.length;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (near[mid] - mid <= rank) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return rank + low;
+    }
+
+    /**
+     * @param cell The index of the cell
+     * @param distanceInMeters The distance
+     * @return The sorted indexes of the cells closer than the distance to the cell
+     */
+    public int[] getNearCells(int cell, double distanceInMeters) {
+        CellSet set = getCellSet(cell, distanceInMeters);
+        return set.far ? complement(set.cells) : set.cells;
+    }
+
+    /**
+     * @return The cached near or far set of the cell, whichever is smaller
+     */
+    private CellSet getCellSet(int cell, double distanceInMeters) {
+        Long key = ((long) cell << 32) | (Float.floatToIntBits((float) distanceInMeters) & 0xffffffffL);
+        CellSet set;
+
+        synchronized (cache) {
+            set = cache.get(key);
+        }
+
+        if (set == null) {
+            int[] near = findNearCells(cell, distanceInMeters);
+            set = (near.length > lats.length / 2) ? new CellSet(complement(near), true) : new CellSet(near, false);
+
+            synchronized (cache) {
+                if (cache.put(key, set) == null) {
+                    cachedCells += set.cells.length;
+                }
+
+                // keep the memory used by the cache bounded
+                Iterator<CellSet> eldest = cache.values().iterator();
+                while (cachedCells > MAX_CACHED_CELLS && cache.size() > 1) {
+                    cachedCells -= eldest.next().cells.length;
+                    eldest.remove();
+                }
+            }
+        }
+
+        return set;
+    }
+
+    /**
+     * @param cells The sorted indexes of some cells
+     * @return The sorted indexes of all the other cells
+     */
+    private int[] complement(int[] cells) {
+        int[] others = new int[lats.length - cells.length];
+        int count = 0, k = 0;
+
+        for (int i = 0; i < lats.length; i++) {
+            if (k < cells.length && cells[k] == i) {
+                k++;
+            } else {
+                others[count++] = i;
+            }
+        }
+
+        return others;
+    }
+
+    private int[] findNearCells(int cell, double distanceInMeters) {
+        double lat = lats[cell];
+        double lon = lons[cell];
+        double latSpan = distanceInMeters / METERS_PER_DEGREE;
+
+        int firstRow = Math.max(0, (int) Math.floor((lat - latSpan - minLat) / bucketSize));
+        int lastRow = Math.min(rows - 1, (int) Math.floor((lat + latSpan - minLat) / bucketSize));
+        int firstCol = 0;
+        int lastCol = cols - 1;
+
+        // the longitude span grows with the latitude, look at all the columns
+        // if the distance reaches a pole or wraps around the antimeridian
+        double maxAbsLat = Math.abs(lat) + latSpan;
+        if (maxAbsLat < 89) {
+            double lonSpan = latSpan / Math.cos(Math.toRadians(maxAbsLat));
+
+            if (lon - lonSpan >= -180 && lon + lonSpan <= 180) {
+                firstCol = Math.max(0, (int) Math.floor((lon - lonSpan - minLon) / bucketSize));
+                lastCol = Math.min(cols - 1, (int) Math.floor((lon + lonSpan - minLon) / bucketSize));
+            }
+        }
+
+        int[] near = new int[16];
+        int count = 0;
+
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstCol; c <= lastCol; c++) {
+                int b = r * cols + c;
+
+                for (int k = bucketStart[b]; k < bucketStart[b + 1]; k++) {
+                    int other = bucketCells[k];
+
+                    if (Cell.distance(lat, lon, lats[other], lons[other]) < distanceInMeters) {
+                        if (count == near.length) {
+                            near = Arrays.copyOf(near, count * 2);
+                        }
+                        near[count++] = other;
+                    }
+                }
+            }
+        }
+
+        near = Arrays.copyOf(near, count);
+        Arrays.sort(near);
+        return near;
+    }
+
+    private int bucket(int cell) {
+        int r = (int) ((lats[cell] - minLat) / bucketSize);
+        int c = (int) ((lons[cell] - minLon) / bucketSize);
+        return Math.min(r, rows - 1) * cols + Math.min(c, cols - 1);
+    }
+
+    /**
+     * The near or far set of a cell.
+     */
+    private static final class CellSet {
+        final int[] cells;
+        final boolean far;
+
+        CellSet(int[] cells, boolean far) {
+            this.cells = cells;
+            this.far = far;
+        }
+    }
+}
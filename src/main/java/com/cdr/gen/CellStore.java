@@ -0,0 +1,312 @@
+package com.cdr.gen;
+
+import com.cdr.gen.util.JavaUtils;
+import org.apache.log4j.Logger;
+import org.supercsv.io.CsvListReader;
+import org.supercsv.io.ICsvListReader;
+import org.supercsv.prefs.CsvPreference;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-only table of cells stored as columns: the latitudes and longitudes in
+ * primitive arrays and the ids as UTF-8 bytes in a single buffer. Cells are
+ * identified by their position in the table.
+ *
+ * Tables are loaded from a CSV file (<code>ID;Lat;Lon</code>) or from a binary
+ * file created by {@link #writeBinary(Path)}, which is memory-mapped, and are
+ * shared by all the threads that load the same file.
+ *
+ * To compile a CSV file into a binary file:
+ * <pre>java -cp cdr.jar com.cdr.gen.CellStore cells.csv cells.bin</pre>
+ */
+public class CellStore {
+    private static final Logger LOG = Logger.getLogger(CellStore.class);
+    public static final String CELL_DIST_CSV = "/cell_dist.csv";
+    private static final int MAGIC = 0x43454c4c;
+    private static final int VERSION = 1;
+    private static final Map<String, CellStore> STORES = new ConcurrentHashMap<>();
+
+    private final double[] lats;
+    private final double[] lons;
+    private final int[] idOffsets;
+    private final ByteBuffer idBytes;
+
+    private volatile Map<String, Integer> indexById;
+    private volatile CellIndex spatialIndex;
+
+    private CellStore(double[] lats, double[] lons, int[] idOffsets, ByteBuffer idBytes) {
+        this.lats = lats;
+        this.lons = lons;
+        this.idOffsets = idOffsets;
+        this.idBytes = idBytes;
+    }
+
+    /**
+     * @return The cells of the default cell file
+     */
+    public static CellStore getDefault() {
+        return get(CELL_DIST_CSV);
+    }
+
+    /**
+     * Returns the cells of a file, loading it only the first time.
+     * @param file The file with the cells, a binary file if its name ends
+     *             with <code>.bin</code> or a CSV file otherwise
+     * @return The cells
+     */
+    public static CellStore get(String file) {
+        return STORES.computeIfAbsent(file, f -> {
+            try {
+                LOG.info("Loading cell file " + f + ".");
+                return f.endsWith(".bin") ? loadBinary(Paths.get(f)) : loadCsv(f);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Error while reading the cell file " + f, ex);
+            }
+        });
+    }
+
+    private static CellStore loadCsv(String file) throws IOException {
+        if (JavaUtils.isJar() && file.equals(CELL_DIST_CSV)) {
+            return loadCsv(CellStore.class.getResourceAsStream(file));
+        }
+
+        if (file.equals(CELL_DIST_CSV)) {
+            file = "src/main/resources" + file;
+        }
+
+        try (InputStream is = new FileInputStream(file)) {
+            return loadCsv(is);
+        }
+    }
+
+    /**
+     * @return A store with a single cell
+     */
+    public static CellStore of(String id, double lat, double lon) {
+        return new CellStore(new double[] {lat}, new double[] {lon},
+                new int[] {0, id.getBytes(StandardCharsets.UTF_8).length},
+                ByteBuffer.wrap(id.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Reads the cells from a CSV stream, one row at a time.
+     * @param is The CSV stream
+     * @return The cells
+     * @throws IOException If the stream can't be read
+     */
+    public static CellStore loadCsv(InputStream is) throws IOException {
+        double[] lats = new double[1024];
+        double[] lons = new double[1024];
+        int[] idOffsets = new int[1025];
+        ByteArrayOutputStream ids = new ByteArrayOutputStream();
+        int count = 0;
+
+        Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
+        ICsvListReader listReader = new CsvListReader(reader, CsvPreference.EXCEL_NORTH_EUROPE_PREFERENCE);
+        listReader.getHeader(true);
+
+        List<String> cellList;
+        while ((cellList = listReader.read()) != null) {
+            if (count == lats.length) {
+                lats = Arrays.copyOf(lats, count * 2);
+                lons = Arrays.copyOf(lons, count * 2);
+                idOffsets = Arrays.copyOf(idOffsets, count * 2 + 1);
+            }
+
+            byte[] id = cellList.get(0).getBytes(StandardCharsets.UTF_8);
+            ids.write(id, 0, id.length);
+            lats[count] = Double.parseDouble(cellList.get(1));
+            lons[count] = Double.parseDouble(cellList.get(2));
+            idOffsets[++count] = ids.size();
+        }
+
+        listReader.close();
+
+        return new CellStore(Arrays.copyOf(lats, count), Arrays.copyOf(lons, count),
+                Arrays.copyOf(idOffsets, count + 1), ByteBuffer.wrap(ids.toByteArray()));
+    }
+
+    /**
+     * Maps a binary cell file. The ids are read straight from the mapped file.
+     * @param file The binary file
+     * @return The cells
+     * @throws IOException If the file can't be read or is not a cell file
+     */
+    public static CellStore loadBinary(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a cell file: " + file);
+            }
+
+            int count = buffer.getInt();
+            double[] lats = new double[count];
+            double[] lons = new double[count];
+            int[] idOffsets = new int[count + 1];
+
+            buffer.asDoubleBuffer().get(lats);
+            buffer.position(buffer.position() + count * 8);
+            buffer.asDoubleBuffer().get(lons);
+            buffer.position(buffer.position() + count * 8);
+            buffer.asIntBuffer().get(idOffsets);
+            buffer.position(buffer.position() + (count + 1) * 4);
+
+            ByteBuffer idBytes = buffer.slice();
+            idBytes.limit(idOffsets[count]);
+
+            return new CellStore(lats, lons, idOffsets, idBytes);
+        }
+    }
+
+    /**
+     * Writes the cells to a binary file, that can be loaded with {@link #loadBinary(Path)}.
+     * @param file The binary file
+     * @throws IOException If the file can't be written
+     */
+    public void writeBinary(Path file) throws IOException {
+        int count = size();
+        int idLength = idOffsets[count];
+        ByteBuffer buffer = ByteBuffer.allocate(12 + count * 16 + (count + 1) * 4 + idLength);
+
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count);
+        for (double lat : lats) buffer.putDouble(lat);
+        for (double lon : lons) buffer.putDouble(lon);
+        for (int offset : idOffsets) buffer.putInt(offset);
+
+        ByteBuffer ids = idBytes.duplicate();
+        ids.clear().limit(idLength);
+        buffer.put(ids);
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * @return The number of cells
+     */
+    public int size() {
+        return lats.length;
+    }
+
+    public double getLat(int cell) {
+        return lats[cell];
+    }
+
+    public double getLon(int cell) {
+        return lons[cell];
+    }
+
+    public String getId(int cell) {
+        byte[] id = new byte[getIdLength(cell)];
+        copyId(cell, id, 0);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The length of the id of a cell, in UTF-8 bytes
+     */
+    public int getIdLength(int cell) {
+        return idOffsets[cell + 1] - idOffsets[cell];
+    }
+
+    /**
+     * Copies the id of a cell, as UTF-8, to an array.
+     * @param cell The cell
+     * @param dest The destination array
+     * @param pos The position in the destination array
+     * @return The number of bytes copied
+     */
+    public int copyId(int cell, byte[] dest, int pos) {
+        int start = idOffsets[cell];
+        int length = idOffsets[cell + 1] - start;
+
+        for (int i = 0; i < length; i++) {
+            dest[pos + i] = idBytes.get(start + i);
+        }
+
+        return length;
+    }
+
+    /**
+     * @return A view of a cell
+     */
+    public Cell getCell(int cell) {
+        return new Cell(this, cell);
+    }
+
+    /**
+     * @param id The id of the cell
+     * @return The position of the cell, or -1 if there is no cell with the given id
+     */
+    public int indexOf(String id) {
+        Map<String, Integer> index = indexById;
+
+        if (index == null) {
+            synchronized (this) {
+                if ((index = indexById) == null) {
+                    index = new HashMap<>(size() * 2);
+                    for (int i = 0; i < size(); i++) {
+                        index.put(getId(i), i);
+                    }
+                    indexById = index;
+                }
+            }
+        }
+
+        Integer position = index.get(id);
+        return (position != null) ? position : -1;
+    }
+
+    /**
+     * @return The spatial index of the cells
+     */
+    public CellIndex getSpatialIndex() {
+        CellIndex index = spatialIndex;
+
+        if (index == null) {
+            synchronized (this) {
+                if ((index = spatialIndex) == null) {
+                    spatialIndex = index = new CellIndex(lats, lons);
+                }
+            }
+        }
+
+        return index;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CellStore <cells.csv> <cells.bin>");
+            System.exit(-1);
+        }
+
+        try (InputStream is = new FileInputStream(args[0])) {
+            loadCsv(is).writeBinary(Paths.get(args[1]));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.cdr.gen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The columns of the output. The columns, and their order, are picked with the
+ * <code>columns</code> configuration, a list of column names. Without it the
+ * output has every column up to <code>fraud_2</code>, with <code>line_id</code>
+ * only if <code>includeLineId</code> is set.
+ */
+public enum Column {
+    UUID("uuid"),
+    CELL_ID("cell_id"),
+    LAT("lat"),
+    LON("lon"),
+    CALLING_NUMBER("calling_number"),
+    LINE_ID("line_id"),
+    CALLED_NUMBER("called_number"),
+    START_DATE("start_date_dd_mm_yyyy"),
+    END_DATE("end_date_dd_mm_yyyy"),
+    START_TIME("start_time_hh_mm_ss"),
+    END_TIME("end_time_hh_mm_ss"),
+    CALL_TYPE("call_type"),
+    COST("cost"),
+    FRAUD("fraud"),
+    FRAUD_2("fraud_2"),
+    /** The duration of the call, in seconds */
+    DURATION_SEC("duration_sec"),
+    /** The start of the call, in seconds since the epoch */
+    START_EPOCH("start_epoch"),
+    /** The end of the call, in seconds since the epoch */
+    END_EPOCH("end_epoch");
+
+    private final String name;
+
+    Column(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return The name of the column, as in the headers
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name The name of the column
+     * @return The column
+     */
+    public static Column forName(String name) {
+        for (Column column : values()) {
+            if (column.name.equals(name)) {
+                return column;
+            }
+        }
+        throw new RuntimeException("Unknown column \"" + name + "\"");
+    }
+
+    /**
+     * @param config The configuration
+     * @return The columns of the output, in order
+     */
+    public static List<Column> fromConfig(Map<String, Object> config) {
+        List<String> names = (List<String>) config.get("columns");
+        List<Column> columns = new ArrayList<>();
+
+        if (names != null) {
+            for (String name : names) {
+                columns.add(forName(name));
+            }
+            return columns;
+        }
+
+        columns.addAll(Arrays.asList(values()).subList(0, FRAUD_2.ordinal() + 1));
+
+        if (!Boolean.TRUE.equals(config.get("includeLineId"))) {
+            columns.remove(LINE_ID);
+        }
+
+        return columns;
+    }
+}
@@ -0,0 +1,128 @@
+package com.cdr.gen;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Channel that cuts what is written to it in blocks, compresses the blocks
+ * in parallel on the common pool and writes them to another channel in order.
+ * At most <code>parallelism</code> blocks are compressed at the same time.
+ *
+ * Instances are not thread-safe.
+ */
+public class CompressingChannel implements WritableByteChannel {
+    private static final int BLOCK_SIZE = 4 << 20;
+
+    private final WritableByteChannel channel;
+    private final Compression compression;
+    private final int parallelism;
+    private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private final Deque<byte[]> pendingBlocks = new ArrayDeque<>();
+    private final Deque<byte[]> freeBlocks = new ArrayDeque<>();
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int blockLength;
+    private long blockCount;
+    private boolean open = true;
+
+    /**
+     * @param channel The channel where the compressed blocks are written
+     * @param compression The compression of the blocks
+     * @param parallelism The number of blocks compressed at the same time
+     */
+    public CompressingChannel(WritableByteChannel channel, Compression compression, int parallelism) {
+        this.channel = channel;
+        this.compression = compression;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!open) {
+            throw new IOException("Channel closed");
+        }
+
+        int written = src.remaining();
+
+        while (src.hasRemaining()) {
+            int length = Math.min(src.remaining(), BLOCK_SIZE - blockLength);
+            src.get(block, blockLength, length);
+            blockLength += length;
+
+            if (blockLength == BLOCK_SIZE) {
+                submitBlock();
+            }
+        }
+
+        return written;
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = blockLength;
+        pending.addLast(CompletableFuture.supplyAsync(() -> compression.compress(data, length),
+                ForkJoinPool.commonPool()));
+        pendingBlocks.addLast(data);
+        blockCount++;
+
+        // the blocks are reused once compressed
+        block = freeBlocks.isEmpty() ? new byte[BLOCK_SIZE] : freeBlocks.removeFirst();
+        blockLength = 0;
+
+        while (pending.size() > parallelism) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        byte[] compressed;
+
+        try {
+            compressed = pending.removeFirst().get();
+            freeBlocks.addLast(pendingBlocks.removeFirst());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Error while compressing", ex.getCause());
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(compressed);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Compresses and writes the last block and closes the other channel.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+
+        try {
+            // an empty file still gets an empty member or frame
+            if (blockLength > 0 || blockCount == 0) {
+                submitBlock();
+            }
+            while (!pending.isEmpty()) {
+                writeBlock();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.cdr.gen;
+
+import com.github.luben.zstd.Zstd;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of the output files, picked with the <code>compression</code>
+ * configuration or the <code>--compression</code> option.
+ *
+ * The output is cut in blocks that are compressed in parallel, each one as a
+ * complete gzip member, zstd frame or LZ4 frame. Concatenated members and
+ * frames are valid files for gzip, zstd and lz4, so the output can be read by
+ * the standard tools.
+ */
+public enum Compression {
+    NONE("none", ""),
+    GZIP("gzip", ".gz"),
+    ZSTD("zstd", ".zst"),
+    LZ4("lz4", ".lz4");
+
+    private static final int ZSTD_LEVEL = 3;
+
+    private final String name;
+    private final String suffix;
+
+    Compression(String name, String suffix) {
+        this.name = name;
+        this.suffix = suffix;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The suffix of the compressed files, such as <code>.gz</code>
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * @param name The name of the compression
+     * @return The compression
+     */
+    public static Compression forName(String name) {
+        for (Compression compression : values()) {
+            if (compression.name.equals(name)) {
+                return compression;
+            }
+        }
+        throw new RuntimeException("Unknown compression \"" + name + "\"");
+    }
+
+    /**
+     * @param config The configuration
+     * @return The compression of the <code>compression</code> configuration
+     */
+    public static Compression fromConfig(Map<String, Object> config) {
+        return forName((String) config.getOrDefault("compression", NONE.name));
+    }
+
+    /**
+     * Opens a file, replacing it, that compresses what is written to it.
+     * @param file The file
+     * @param parallelism The number of blocks compressed at the same time
+     * @return The channel of the file
+     * @throws IOException If the file can't be opened
+     */
+    public WritableByteChannel open(Path file, int parallelism) throws IOException {
+        return open(file, parallelism, false);
+    }
+
+    /**
+     * Opens a file that compresses what is written to it. When appending, the
+     * new blocks follow the members or frames already in the file.
+     * @param file The file
+     * @param parallelism The number of blocks compressed at the same time
+     * @param append True to append to the file or False to replace it
+     * @return The channel of the file
+     * @throws IOException If the file can't be opened
+     */
+    public WritableByteChannel open(Path file, int parallelism, boolean append) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+
+        return (this == NONE) ? channel : new CompressingChannel(channel, this, parallelism);
+    }
+
+    /**
+     * Compresses a block as a self-contained member or frame.
+     * @param data The data
+     * @param length The length of the data
+     * @return The compressed block
+     */
+    byte[] compress(byte[] data, int length) {
+        if (this == NONE) {
+            return Arrays.copyOf(data, length);
+        }
+
+        if (this == ZSTD) {
+            byte[] frame = new byte[(int) Zstd.compressBound(length)];
+            long size = Zstd.compressByteArray(frame, 0, frame.length, data, 0, length, ZSTD_LEVEL);
+
+            if (Zstd.isError(size)) {
+                throw new RuntimeException("Error while compressing: " + Zstd.getErrorName(size));
+            }
+            return Arrays.copyOf(frame, (int) size);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 4 + 64);
+
+        try (OutputStream out = (this == GZIP) ? new GZIPOutputStream(bytes, 1 << 16)
+                : new LZ4FrameOutputStream(bytes)) {
+            out.write(data, 0, length);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return bytes.toByteArray();
+    }
+}
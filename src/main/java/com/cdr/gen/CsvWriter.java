@@ -0,0 +1,286 @@
+package com.cdr.gen;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Writes calls as CSV rows. Each row is encoded as ASCII straight into a
+ * reusable buffer, which is written to the file when full, so that writing
+ * a row doesn't create any object.
+ *
+ * The columns are given by {@link Column#fromConfig(Map)}. Dates, times and
+ * numbers are rendered by {@link FormatTables}.
+ *
+ * The file is compressed with the <code>compression</code> configuration.
+ *
+ * Instances are not thread-safe.
+ */
+public class CsvWriter implements Closeable, CallSink {
+    private static final int BUFFER_SIZE = 1 << 20;
+    // the longest value of a column, not counting the cell id and the type
+    private static final int MAX_VALUE_LENGTH = 40;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] bytes;
+    private final byte[] newLine;
+    private final Column[] columns;
+    private final int maxRowLength;
+    private final int cellIdColumns;
+    private final boolean displayHeaders;
+    private final IdGenerator ids;
+    private final FormatTables formats;
+    private long flushedBytes;
+    private long records;
+
+    // text of the types of call
+    private final byte[][] types = new byte[128][];
+
+    /**
+     * @param file The file, which is replaced
+     * @param config The configuration
+     * @throws IOException If the file can't be opened
+     */
+    public CsvWriter(Path file, Map<String, Object> config) throws IOException {
+        this(file, config, new FormatTables(config));
+    }
+
+    /**
+     * @param file The file, which is replaced
+     * @param config The configuration
+     * @param formats The formatting tables, which can be shared by several writers
+     * @throws IOException If the file can't be opened
+     */
+    public CsvWriter(Path file, Map<String, Object> config, FormatTables formats) throws IOException {
+        this(file, config, formats, BUFFER_SIZE);
+    }
+
+    /**
+     * @param file The file, which is replaced
+     * @param config The configuration
+     * @param formats The formatting tables, which can be shared by several writers
+     * @param bufferSize The size of the buffer, in bytes, which must hold at least a row
+     * @throws IOException If the file can't be opened
+     */
+    public CsvWriter(Path file, Map<String, Object> config, FormatTables formats, int bufferSize) throws IOException {
+        this(file, config, formats, bufferSize, false);
+    }
+
+    /**
+     * @param file The file
+     * @param config The configuration
+     * @param formats The formatting tables, which can be shared by several writers
+     * @param bufferSize The size of the buffer, in bytes, which must hold at least a row
+     * @param append True to append to the file or False to replace it
+     * @throws IOException If the file can't be opened
+     */
+    public CsvWriter(Path file, Map<String, Object> config, FormatTables formats, int bufferSize, boolean append)
+            throws IOException {
+        this(Compression.fromConfig(config).open(file, ((Number) config.getOrDefault("compressionThreads",
+                (long) Runtime.getRuntime().availableProcessors())).intValue(), append), config, formats, bufferSize);
+    }
+
+    /**
+     * @param channel The channel where the rows are written, without compression,
+     *                which is closed with the writer
+     * @param config The configuration
+     */
+    public CsvWriter(WritableByteChannel channel, Map<String, Object> config) {
+        this(channel, config, new FormatTables(config), BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel The channel where the rows are written, without compression,
+     *                which is closed with the writer
+     * @param config The configuration
+     * @param formats The formatting tables, which can be shared by several writers
+     * @param bufferSize The size of the buffer, in bytes, which must hold at least a row
+     */
+    public CsvWriter(WritableByteChannel channel, Map<String, Object> config, FormatTables formats, int bufferSize) {
+        this.formats = formats;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.bytes = buffer.array();
+        this.channel = channel;
+        this.newLine = System.getProperty("line.separator").getBytes(StandardCharsets.US_ASCII);
+        this.columns = Column.fromConfig(config).toArray(new Column[0]);
+        this.maxRowLength = columns.length * (MAX_VALUE_LENGTH + 1) + newLine.length;
+        this.cellIdColumns = (int) Arrays.stream(columns).filter(c -> c == Column.CELL_ID).count();
+        this.displayHeaders = Boolean.parseBoolean(config.getOrDefault("displayHeaders", false).toString());
+        this.ids = IdGenerator.create(config, 0);
+    }
+
+    /**
+     * Writes the headers, if the <code>displayHeaders</code> configuration is set.
+     * @throws IOException If the file can't be written
+     */
+    public void writeHeaders() throws IOException {
+        if (!displayHeaders) {
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (Column column : columns) {
+            sb.append((sb.length() > 0) ? "," : "").append(column.getName());
+        }
+
+        byte[] headers = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        reserve(headers.length + newLine.length);
+        buffer.put(headers).put(newLine);
+    }
+
+    /**
+     * Writes all the calls of a person.
+     * @param p The person
+     * @throws IOException If the file can't be written
+     */
+    public void write(Person p) throws IOException {
+        for (Call call : p.getCalls()) {
+            write(p.getNumber(), call);
+        }
+    }
+
+    /**
+     * Writes a call.
+     * @param callingNumber The number of the person who made the call
+     * @param call The call
+     * @throws IOException If the file can't be written
+     */
+    @Override
+    public void write(long callingNumber, Call call) throws IOException {
+        CellStore cells = call.getCells();
+        int cell = call.getCellIndex();
+
+        reserve(maxRowLength + cellIdColumns * cells.getIdLength(cell)
+                + getType(call.getTypeOrdinal()).length);
+        int pos = buffer.position();
+
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                bytes[pos++] = ',';
+            }
+
+            switch (columns[i]) {
+                case UUID:
+                    pos += ids.write(call.getIdHigh(), call.getIdLow(), bytes, pos);
+                    break;
+                case CELL_ID:
+                    pos += cells.copyId(cell, bytes, pos);
+                    break;
+                case LAT:
+                    pos = formats.writeLat(cells, cell, bytes, pos);
+                    break;
+                case LON:
+                    pos = formats.writeLon(cells, cell, bytes, pos);
+                    break;
+                case CALLING_NUMBER:
+                    pos += PhoneNumberGenerator.write(callingNumber, bytes, pos);
+                    break;
+                case LINE_ID:
+                    pos = FormatTables.writeLong(call.getLine(), bytes, pos);
+                    break;
+                case CALLED_NUMBER:
+                    pos += PhoneNumberGenerator.write(call.getDestNumber(), bytes, pos);
+                    break;
+                case START_DATE:
+                    pos = formats.writeDate(formats.toLocalMillis(call.getStartSecond() * 1000), bytes, pos);
+                    break;
+                case END_DATE:
+                    pos = formats.writeDate(formats.toLocalMillis(call.getEndSecond() * 1000), bytes, pos);
+                    break;
+                case START_TIME:
+                    pos = formats.writeTime(formats.toLocalMillis(call.getStartSecond() * 1000), bytes, pos);
+                    break;
+                case END_TIME:
+                    pos = formats.writeTime(formats.toLocalMillis(call.getEndSecond() * 1000), bytes, pos);
+                    break;
+                case CALL_TYPE:
+                    pos = put(getType(call.getTypeOrdinal()), pos);
+                    break;
+                case COST:
+                    pos = formats.writeCost(call.getCost(), bytes, pos);
+                    break;
+                case FRAUD:
+                    bytes[pos++] = (byte) (call.getFraud() == Fraud.FAR ? '1' : '0');
+                    break;
+                case FRAUD_2:
+                    bytes[pos++] = (byte) (call.getFraud() == Fraud.UNUSUAL ? '1' : '0');
+                    break;
+                case DURATION_SEC:
+                    pos = FormatTables.writeLong(call.getDuration(), bytes, pos);
+                    break;
+                case START_EPOCH:
+                    pos = FormatTables.writeLong(call.getStartSecond(), bytes, pos);
+                    break;
+                case END_EPOCH:
+                    pos = FormatTables.writeLong(call.getEndSecond(), bytes, pos);
+                    break;
+            }
+        }
+
+        pos = put(newLine, pos);
+
+        buffer.position(pos);
+        records++;
+    }
+
+    /**
+     * @return The number of calls written
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return The number of bytes written, including the buffered ones, before
+     *         the compression
+     */
+    public long getSize() {
+        return flushedBytes + buffer.position();
+    }
+
+    private byte[] getType(int ordinal) {
+        if (types[ordinal] == null) {
+            types[ordinal] = CallType.name(ordinal).getBytes(StandardCharsets.UTF_8);
+        }
+        return types[ordinal];
+    }
+
+    private int put(byte[] src, int pos) {
+        System.arraycopy(src, 0, bytes, pos, src.length);
+        return pos + src.length;
+    }
+
+    private void reserve(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered rows to the file.
+     * @throws IOException If the file can't be written
+     */
+    public void flush() throws IOException {
+        flushedBytes += buffer.position();
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.cdr.gen;
 
-import com.cdr.gen.util.RandomGaussian;
+import com.cdr.gen.util.AliasSampler;
+import com.cdr.gen.util.GaussianSampler;
 import com.cdr.gen.util.IOUtils;
 import com.cdr.gen.util.JavaUtils;
+import com.cdr.gen.util.Rng;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
@@ -12,7 +14,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
 import org.joda.time.Duration;
@@ -43,9 +44,15 @@ public class DateTimeDistribution {
     
     private Map<String, Double> dayDistribution;
     private List<Double> dayDistributionVals;
+    private AliasSampler daySampler;
     
-    private Map<String, Map<String, Double>> timeDistribution;
-    private Map<String, List<Double>> timeDistributionVals;
+    // minute of the day of each time slot and sampler of the slots, by type of day
+    private Map<String, int[]> timeDistributionMinutes;
+    private Map<String, AliasSampler> timeDistributionSamplers;
+    private int[] weekdayMinutes;
+    private AliasSampler weekdaySampler;
+    private int[] weekendMinutes;
+    private AliasSampler weekendSampler;
     
     private DateTimeFormatter dateFormatter;
     private DateTimeFormatter dateTimeFormatter;
@@ -53,8 +60,6 @@ public class DateTimeDistribution {
     private DateTime startDate;
     private DateTime endDate;
     private int dateRange;
-    
-    private Random random;
 
     public DateTimeDistribution(Map<String, Object> config) {
         outgoingCallParams = (Map<String, Object>) config.get("outgoingCallParams");
@@ -73,8 +78,6 @@ public class DateTimeDistribution {
         
         dateRange = duration.toStandardDays().getDays();
         
-        random = new Random(System.currentTimeMillis());
-        
         String timeDistFile = config.containsKey("timeDistCsv") 
                 ? (String)config.get("timeDistCsv") : TIME_DIST_CSV;
         
@@ -89,11 +92,22 @@ public class DateTimeDistribution {
             dayDistribution.put(day, params.get(day));
             dayDistributionVals.add(params.get(day));
         }
+        
+        double[] vals = new double[DAYS.length];
+        for (int i=0; i<vals.length; i++) {
+            vals[i] = dayDistributionVals.get(i);
+        }
+        daySampler = new AliasSampler(vals);
     }
     
+    /**
+     * Loads the time distribution file and compiles it into the minute of the
+     * day of each time slot and a sampler of the slots, for each type of day.
+     * @param filename The time distribution file
+     */
     public void loadTimeDist(String filename) {
-        timeDistribution = new HashMap<String, Map<String, Double>>();
-        timeDistributionVals = new HashMap<String, List<Double>>();
+        Map<String, List<Integer>> minutes = new HashMap<String, List<Integer>>();
+        Map<String, List<Double>> probs = new HashMap<String, List<Double>>();
         
         try {
             ICsvListReader listReader;
@@ -116,21 +130,17 @@ public class DateTimeDistribution {
 
             List<String> timeList;
             while( (timeList = listReader.read()) != null ) {
-                String time = timeList.get(0);
+                String[] time = timeList.get(0).split(":");
                 Double prob = Double.parseDouble(timeList.get(1));
                 String type = timeList.get(2);
-                
 
-                if (!timeDistribution.containsKey(type)) {
-                    timeDistribution.put(type, new HashMap<String, Double>());
-                }
-                
-                if (!timeDistributionVals.containsKey(type)) {
-                    timeDistributionVals.put(type, new ArrayList<Double>());
+                if (!minutes.containsKey(type)) {
+                    minutes.put(type, new ArrayList<Integer>());
+                    probs.put(type, new ArrayList<Double>());
                 }
 
-                timeDistribution.get(type).put(time, prob);
-                timeDistributionVals.get(type).add(prob);
+                minutes.get(type).add(Integer.parseInt(time[0]) * 60 + Integer.parseInt(time[1]));
+                probs.get(type).add(prob);
             }
 
             listReader.close();
@@ -139,6 +149,28 @@ public class DateTimeDistribution {
         } catch (IOException ex) {
             LOG.error("Error while reading the time distribution file.", ex);
         }
+
+        timeDistributionMinutes = new HashMap<String, int[]>();
+        timeDistributionSamplers = new HashMap<String, AliasSampler>();
+
+        for (Map.Entry<String, List<Integer>> e : minutes.entrySet()) {
+            List<Double> typeProbs = probs.get(e.getKey());
+            int[] typeMinutes = new int[e.getValue().size()];
+            double[] weights = new double[typeMinutes.length];
+
+            for (int i=0; i<typeMinutes.length; i++) {
+                typeMinutes[i] = e.getValue().get(i);
+                weights[i] = typeProbs.get(i);
+            }
+
+            timeDistributionMinutes.put(e.getKey(), typeMinutes);
+            timeDistributionSamplers.put(e.getKey(), new AliasSampler(weights));
+        }
+
+        weekdayMinutes = timeDistributionMinutes.get(TYPE_WEEKDAY);
+        weekdaySampler = timeDistributionSamplers.get(TYPE_WEEKDAY);
+        weekendMinutes = timeDistributionMinutes.get(TYPE_WEEKEND);
+        weekendSampler = timeDistributionSamplers.get(TYPE_WEEKEND);
     }
     
     public void loadOffPeakTimePeriod(Map<String, String> params) {
@@ -162,29 +194,25 @@ public class DateTimeDistribution {
     /**
      * Generates a random {@link DateTime} for a phone call.
      * @param type The type of time distribution: {@link #TYPE_WEEKDAY} or {@link #TYPE_WEEKEND}
-     * @param currDay The day of the call, generated by {@link #getDayOfWeek()}
+     * @param currDay The day of the call, generated by {@link #getDayOfWeek(Rng)}
+     * @param rng The random number generator
      * @return The date of the phone call
      */
-    public DateTime getDateTime(String type,  int currDay) {
-        double tmpRnd = 1;
-        
-        while (tmpRnd > 0) {
-            tmpRnd = random.nextDouble();
-            
-            for (Map.Entry<String, Double> e : timeDistribution.get(type).entrySet()) {
-                if (tmpRnd - e.getValue() > 0) {
-                    tmpRnd -= e.getValue();
-                } else {
-                    DateTime date = startDate.plusDays(currDay);
-                    String[] timeStr = e.getKey().split(":");
-                    date = date.plusHours(Integer.parseInt(timeStr[0]))
-                               .plusMinutes(Integer.parseInt(timeStr[1]));
-                    return date;
-                }
-            }
-        }
-        
-        return null;
+    public DateTime getDateTime(String type,  int currDay, Rng rng) {
+        int minute = timeDistributionMinutes.get(type)[timeDistributionSamplers.get(type).next(rng)];
+        return startDate.plusDays(currDay).plusMinutes(minute);
+    }
+    
+    /**
+     * Generates a random time of the day for a phone call.
+     * @param weekend Whether the call happens in a weekend or in a weekday
+     * @param rng The random number generator
+     * @return The minute of the day of the phone call
+     */
+    public int getMinuteOfDay(boolean weekend, Rng rng) {
+        return weekend 
+                ? weekendMinutes[weekendSampler.next(rng)] 
+                : weekdayMinutes[weekdaySampler.next(rng)];
     }
     
     /**
@@ -195,9 +223,10 @@ public class DateTimeDistribution {
      * @param callTime The time portion of the phone call
      * @param avgCallDuration The average duration of a call of this callType
      * @param avgOPCallDuration The average duration of a call of this callType in off peak
+     * @param rng The random number generator
      * @return The duration of the call in minutes
      */
-    public int getCallDuration(int dayName, String callType, LocalTime callTime, long avgCallDuration, long avgOPCallDuration) {
+    public int getCallDuration(int dayName, String callType, LocalTime callTime, long avgCallDuration, long avgOPCallDuration, Rng rng) {
         String stdDevParam;
         long average = avgCallDuration;
         Map<String, Object> params = (Map<String, Object>) outgoingCallParams.get(callType);
@@ -213,33 +242,19 @@ public class DateTimeDistribution {
             stdDevParam = "callStdDev2";
         }
         
-        return Math.abs(RandomGaussian.generate(
-                (Long)params.get(stdDevParam), average)
-                .getValueOne().intValue());
+        return Math.abs((int) GaussianSampler.next(
+                (Long)params.get(stdDevParam), average, rng));
     }
     
     /**
      * Generate a random day for the phone call
+     * @param rng The random number generator
      * @return The day of the phone call
      */
-    public int getDayOfWeek() {
-        double tmpRnd = 1;
-        int currWeek;
-        
-        while (tmpRnd > 0) {
-            tmpRnd = random.nextDouble();
-            
-            for (int k=0; k<size(); k++) {
-                if (tmpRnd - getVal(k) > 0) {
-                    tmpRnd -= getVal(k);
-                } else {
-                    currWeek = (int) (random.nextDouble() * (dateRange / 7));
-                    return (currWeek * 7 - startDate.getDayOfWeek()) + (k+1);
-                }
-            }
-        }
-        
-        return 1;
+    public int getDayOfWeek(Rng rng) {
+        int k = daySampler.next(rng);
+        int currWeek = (int) (rng.nextDouble() * (dateRange / 7));
+        return (currWeek * 7 - startDate.getDayOfWeek()) + (k+1);
     }
     
     /**
@@ -249,9 +264,10 @@ public class DateTimeDistribution {
      * @return The cost of the call
      */
     public double getCallCost(Call call) {
-        int dayOfWeek = call.getTime().getStart().getDayOfWeek();
-        int duration = call.getTime().toDuration().toStandardMinutes().getMinutes();
-        LocalTime startTime = call.getTime().getStart().toLocalTime();
+        DateTime start = new DateTime(call.getStartSecond() * 1000);
+        int dayOfWeek = start.getDayOfWeek();
+        int duration = call.getDuration() / 60;
+        LocalTime startTime = start.toLocalTime();
         
         Map<String, Object> params = (Map<String, Object>) outgoingCallParams.get(call.getType());
         String callCostParam;
@@ -275,4 +291,11 @@ public class DateTimeDistribution {
     public DateTime getEndDate() {
         return endDate;
     }
+
+    /**
+     * @return The number of days from the start date to the end date
+     */
+    public int getDateRange() {
+        return dateRange;
+    }
 }
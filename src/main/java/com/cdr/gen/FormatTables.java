@@ -0,0 +1,276 @@
+package com.cdr.gen;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Renders the dates, times and numbers of the output as ASCII, from tables
+ * built once: the dd/MM/yyyy text of each day of the configured date range,
+ * the HH:mm:ss text of each second of a day and the coordinates of each cell.
+ *
+ * Coordinates are written with <code>coordinateDecimals</code> decimal places
+ * and costs with <code>costDecimals</code>, if configured, or otherwise with
+ * the shortest digits that read back as the same number, as
+ * {@link Double#toString(double)} writes them since Java 19.
+ *
+ * Instances are thread-safe, so a single instance can be shared by the writers
+ * of several files.
+ */
+public class FormatTables {
+    private static final long MILLIS_PER_DAY = 86400000L;
+    private static final int SECONDS_PER_DAY = 86400;
+    private static final int DATE_LENGTH = 10;
+    private static final int TIME_LENGTH = 8;
+    private static final long[] POWERS_OF_TEN = new long[19];
+    private static final String DATE_PATTERN = "dd/MM/yyyy";
+
+    private static volatile byte[] timesOfDay;
+
+    private final DateTimeZone zone;
+    private final long firstDay;
+    private final byte[] dates;
+    private final int coordinateDecimals;
+    private final int costDecimals;
+
+    private volatile Coordinates coordinates;
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * @param config The configuration, with the date range of the calls
+     */
+    public FormatTables(Map<String, Object> config) {
+        this.zone = DateTimeZone.getDefault();
+        this.coordinateDecimals = ((Number) config.getOrDefault("coordinateDecimals", -1L)).intValue();
+        this.costDecimals = ((Number) config.getOrDefault("costDecimals", -1L)).intValue();
+
+        if (coordinateDecimals > 15 || costDecimals > 15) {
+            throw new RuntimeException("At most 15 decimal places are supported");
+        }
+
+        DateTimeFormatter formatter = DateTimeFormat.forPattern(DATE_PATTERN);
+        LocalDate start = formatter.parseLocalDate((String) config.get("startDate"));
+        LocalDate end = formatter.parseLocalDate((String) config.get("endDate"));
+
+        // calls may end, or be moved by a fraud, a few days after the end date
+        start = start.minusDays(1);
+        end = end.plusDays(7);
+
+        this.firstDay = Math.floorDiv(start.toDateTimeAtStartOfDay(DateTimeZone.UTC).getMillis(), MILLIS_PER_DAY);
+        int numDays = (int) (Math.floorDiv(end.toDateTimeAtStartOfDay(DateTimeZone.UTC).getMillis(), MILLIS_PER_DAY)
+                - firstDay + 1);
+
+        this.dates = new byte[numDays * DATE_LENGTH];
+        for (int i = 0; i < numDays; i++) {
+            byte[] text = start.plusDays(i).toString(DATE_PATTERN).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(text, 0, dates, i * DATE_LENGTH, DATE_LENGTH);
+        }
+    }
+
+    private static byte[] getTimesOfDay() {
+        byte[] times = timesOfDay;
+
+        if (times == null) {
+            times = new byte[SECONDS_PER_DAY * TIME_LENGTH];
+
+            for (int second = 0; second < SECONDS_PER_DAY; second++) {
+                int pos = second * TIME_LENGTH;
+                writeDigits(second / 3600, 2, times, pos);
+                times[pos + 2] = ':';
+                writeDigits(second / 60 % 60, 2, times, pos + 3);
+                times[pos + 5] = ':';
+                writeDigits(second % 60, 2, times, pos + 6);
+            }
+
+            timesOfDay = times;
+        }
+
+        return times;
+    }
+
+    /**
+     * @param millis An instant, in milliseconds since the epoch
+     * @return The same wall time in UTC, in milliseconds since the epoch
+     */
+    public long toLocalMillis(long millis) {
+        return millis + zone.getOffset(millis);
+    }
+
+    /**
+     * Writes the date of a local time as dd/MM/yyyy.
+     * @param localMillis The local time
+     * @param dest The destination array
+     * @param pos The position in the destination array
+     * @return The position after the date
+     */
+    public int writeDate(long localMillis, byte[] dest, int pos) {
+        long day = Math.floorDiv(localMillis, MILLIS_PER_DAY) - firstDay;
+
+        if (day >= 0 && day * DATE_LENGTH < dates.length) {
+            System.arraycopy(dates, (int) day * DATE_LENGTH, dest, pos, DATE_LENGTH);
+            return pos + DATE_LENGTH;
+        }
+
+        // out of the configured range
+        byte[] text = new DateTime(localMillis, DateTimeZone.UTC).toString(DATE_PATTERN)
+                .getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(text, 0, dest, pos, text.length);
+        return pos + text.length;
+    }
+
+    /**
+     * Writes the time of a local time as HH:mm:ss.
+     * @param localMillis The local time
+     * @param dest The destination array
+     * @param pos The position in the destination array
+     * @return The position after the time
+     */
+    public int writeTime(long localMillis, byte[] dest, int pos) {
+        int second = (int) (Math.floorMod(localMillis, MILLIS_PER_DAY) / 1000);
+        System.arraycopy(getTimesOfDay(), second * TIME_LENGTH, dest, pos, TIME_LENGTH);
+        return pos + TIME_LENGTH;
+    }
+
+    /**
+     * Writes the latitude of a cell.
+     * @return The position after the latitude
+     */
+    public int writeLat(CellStore cells, int cell, byte[] dest, int pos) {
+        return writeCoordinate(cells, 2 * cell, dest, pos);
+    }
+
+    /**
+     * Writes the longitude of a cell.
+     * @return The position after the longitude
+     */
+    public int writeLon(CellStore cells, int cell, byte[] dest, int pos) {
+        return writeCoordinate(cells, 2 * cell + 1, dest, pos);
+    }
+
+    private int writeCoordinate(CellStore cells, int index, byte[] dest, int pos) {
+        Coordinates c = coordinates;
+
+        if (c == null || c.cells != cells) {
+            coordinates = c = new Coordinates(cells, coordinateDecimals);
+        }
+
+        int length = c.offsets[index + 1] - c.offsets[index];
+        System.arraycopy(c.text, c.offsets[index], dest, pos, length);
+        return pos + length;
+    }
+
+    /**
+     * The text of the latitude and longitude of all the cells of a store.
+     */
+    private static final class Coordinates {
+        final CellStore cells;
+        final byte[] text;
+        final int[] offsets;
+
+        Coordinates(CellStore cells, int decimals) {
+            byte[] text = new byte[cells.size() * 2 * 24 + 64];
+            int[] offsets = new int[cells.size() * 2 + 1];
+            int pos = 0;
+
+            for (int i = 0; i < cells.size(); i++) {
+                if (text.length - pos < 64) {
+                    text = Arrays.copyOf(text, text.length * 2);
+                }
+                pos = writeDecimal(cells.getLat(i), decimals, text, pos);
+                offsets[2 * i + 1] = pos;
+                pos = writeDecimal(cells.getLon(i), decimals, text, pos);
+                offsets[2 * i + 2] = pos;
+            }
+
+            this.cells = cells;
+            this.text = text;
+            this.offsets = offsets;
+        }
+    }
+
+    /**
+     * Writes the cost of a call.
+     * @return The position after the cost
+     */
+    public int writeCost(double cost, byte[] dest, int pos) {
+        return writeDecimal(cost, costDecimals, dest, pos);
+    }
+
+    /**
+     * Writes a number with a fixed number of decimal places or, if the number of
+     * decimal places is negative, with the fewest digits that read back as the
+     * same number, as {@link Double#toString(double)} does, without creating a
+     * String.
+     * @param value The number
+     * @param decimals The number of decimal places
+     * @param dest The destination array
+     * @param pos The position in the destination array
+     * @return The position after the number
+     */
+    public static int writeDecimal(double value, int decimals, byte[] dest, int pos) {
+        if (decimals >= 0 && Math.abs(value) < 1e18 / POWERS_OF_TEN[decimals]) {
+            return writeFixed(value, decimals, dest, pos);
+        }
+
+        return ShortestDecimal.write(value, dest, pos);
+    }
+
+    private static int writeFixed(double value, int decimals, byte[] dest, int pos) {
+        long scaled = Math.round(Math.abs(value) * POWERS_OF_TEN[decimals]);
+
+        if (value < 0 && scaled != 0) {
+            dest[pos++] = '-';
+        }
+
+        pos = writeLong(scaled / POWERS_OF_TEN[decimals], dest, pos);
+
+        if (decimals > 0) {
+            dest[pos++] = '.';
+            pos = writeDigits(scaled % POWERS_OF_TEN[decimals], decimals, dest, pos);
+        }
+
+        return pos;
+    }
+
+    /**
+     * Writes a number in decimal.
+     * @return The position after the number
+     */
+    public static int writeLong(long value, byte[] dest, int pos) {
+        if (value < 0) {
+            dest[pos++] = '-';
+            value = -value;
+        }
+
+        int length = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            length++;
+        }
+
+        return writeDigits(value, length, dest, pos);
+    }
+
+    /**
+     * Writes the last digits of a non-negative number, padded with zeros.
+     * @return The position after the digits
+     */
+    public static int writeDigits(long value, int digits, byte[] dest, int pos) {
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            dest[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+}
@@ -0,0 +1,148 @@
+package com.cdr.gen;
+
+import com.cdr.gen.util.Rng;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Generates the ids of the calls, kept as two longs in the {@link Call}, and
+ * renders them as ASCII. The strategy is picked with the <code>idStrategy</code>
+ * configuration:
+ * <ul>
+ * <li><code>random</code> (default): version 4 UUIDs drawn from a random
+ * number generator;</li>
+ * <li><code>time</code>: version 7 UUIDs, whose first 48 bits are the start of
+ * the call in milliseconds, so they sort by time;</li>
+ * <li><code>sequence</code>: a 64-bit number, with the first account of the
+ * chunk in the upper 32 bits and a counter in the lower 32 bits, rendered in
+ * decimal.</li>
+ * </ul>
+ * Ids must be generated after the time of the call is set. The population
+ * draws them from a random number generator used only for the ids, so that the
+ * strategy changes only the ids of the calls.
+ */
+public abstract class IdGenerator {
+    public static final String RANDOM = "random";
+    public static final String TIME = "time";
+    public static final String SEQUENCE = "sequence";
+
+    /** The maximum number of bytes of a rendered id */
+    public static final int MAX_LENGTH = 36;
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * @param config The configuration
+     * @param shard The first account of the accounts whose calls get the ids
+     * @return The id generator of the <code>idStrategy</code> configuration
+     */
+    public static IdGenerator create(Map<String, Object> config, long shard) {
+        String strategy = (String) config.getOrDefault("idStrategy", RANDOM);
+
+        switch (strategy) {
+            case RANDOM:
+                return new RandomIdGenerator();
+            case TIME:
+                return new TimeIdGenerator();
+            case SEQUENCE:
+                return new SequenceIdGenerator(shard);
+            default:
+                throw new RuntimeException("Unknown id strategy \"" + strategy + "\"");
+        }
+    }
+
+    /**
+     * Sets a new id to the call.
+     * @param call The call
+     * @param rng The random number generator of the ids
+     */
+    public abstract void next(Call call, Rng rng);
+
+    /**
+     * Writes an id as ASCII.
+     * @param high The most significant bits of the id
+     * @param low The least significant bits of the id
+     * @param dest The destination array, with room for {@link #MAX_LENGTH} bytes
+     * @param pos The position in the destination array
+     * @return The number of bytes written
+     */
+    public int write(long high, long low, byte[] dest, int pos) {
+        // 8-4-4-4-12 hexadecimal digits
+        writeHex(high >>> 32, 8, dest, pos);
+        dest[pos + 8] = '-';
+        writeHex(high >>> 16, 4, dest, pos + 9);
+        dest[pos + 13] = '-';
+        writeHex(high, 4, dest, pos + 14);
+        dest[pos + 18] = '-';
+        writeHex(low >>> 48, 4, dest, pos + 19);
+        dest[pos + 23] = '-';
+        writeHex(low, 12, dest, pos + 24);
+        return 36;
+    }
+
+    /**
+     * @return The id rendered as a String
+     */
+    public String toString(long high, long low) {
+        byte[] bytes = new byte[MAX_LENGTH];
+        int length = write(high, low, bytes, 0);
+        return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    private static void writeHex(long value, int digits, byte[] dest, int pos) {
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            dest[i] = HEX_DIGITS[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+
+    private static final class RandomIdGenerator extends IdGenerator {
+        @Override
+        public void next(Call call, Rng rng) {
+            long high = (rng.nextLong() & 0xffffffffffff0fffL) | 0x0000000000004000L;
+            long low = (rng.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+            call.setId(high, low);
+        }
+    }
+
+    private static final class TimeIdGenerator extends IdGenerator {
+        @Override
+        public void next(Call call, Rng rng) {
+            long millis = call.getStartSecond() * 1000;
+            long high = (millis << 16) | 0x7000L | (rng.nextLong() & 0x0fffL);
+            long low = (rng.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+            call.setId(high, low);
+        }
+    }
+
+    private static final class SequenceIdGenerator extends IdGenerator {
+        private long next;
+
+        SequenceIdGenerator(long shard) {
+            if (shard < 0 || shard > 0x7fffffffL) {
+                throw new RuntimeException("Account " + shard + " out of range for sequence ids");
+            }
+            this.next = shard << 32;
+        }
+
+        @Override
+        public void next(Call call, Rng rng) {
+            call.setId(0, next++);
+        }
+
+        @Override
+        public int write(long high, long low, byte[] dest, int pos) {
+            int length = (low == 0) ? 1 : 0;
+            for (long v = low; v != 0; v /= 10) {
+                length++;
+            }
+
+            for (int i = pos + length - 1; i >= pos; i--) {
+                dest[i] = (byte) ('0' + low % 10);
+                low /= 10;
+            }
+            return length;
+        }
+    }
+}
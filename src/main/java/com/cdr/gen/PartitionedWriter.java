@@ -0,0 +1,269 @@
+package com.cdr.gen;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes calls to Hive-style partitions by the local date of their start,
+ * <code>dt=yyyy-MM-dd/</code>, and, if <code>partitionCellBuckets</code> is
+ * set, by a hash of their cell id, <code>dt=yyyy-MM-dd/cell_bucket=N/</code>.
+ *
+ * The rows of each partition are gathered in a buffer of up to
+ * <code>partitionBufferSize</code> bytes (1 MiB by default), which is appended
+ * to the file of the partition, <code>&lt;prefix&gt;-00000.csv</code>, when
+ * full. The buffers take at most <code>partitionMemory</code> bytes together
+ * (64 MiB by default), beyond which the largest one is written and freed, so
+ * only one file is open at a time and each partition has a single file. A
+ * compressed file gets a gzip member or zstd/LZ4 frame per buffer written.
+ *
+ * Instances are not thread-safe.
+ */
+public class PartitionedWriter implements Closeable, CallSink {
+    private static final long MILLIS_PER_DAY = 86400000L;
+    private static final long DEFAULT_MEMORY = 64L << 20;
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    private static final int INITIAL_BUFFER_SIZE = 4 << 10;
+    // the rows are formatted one at a time, so this only has to hold the longest one
+    private static final int ROW_BUFFER_SIZE = 64 << 10;
+
+    private final Path dir;
+    private final String prefix;
+    private final String suffix;
+    private final Compression compression;
+    private final FormatTables formats;
+    private final long memory;
+    private final int bufferSize;
+    private final int cellBuckets;
+
+    // formats each row into the buffer of the partition being written
+    private final CsvWriter rows;
+    private final Map<Long, Partition> partitions = new LinkedHashMap<>();
+    private final List<Path> files = new ArrayList<>();
+    private Partition target;
+    // the bytes taken by the buffers of all the partitions
+    private long buffered;
+
+    // the bucket of each cell of the last cell store
+    private CellStore bucketCells;
+    private int[] buckets;
+
+    /**
+     * @param dir The directory of the partitions
+     * @param prefix The prefix of the names of the files
+     * @param config The configuration
+     */
+    public PartitionedWriter(Path dir, String prefix, Map<String, Object> config) {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.compression = Compression.fromConfig(config);
+        this.suffix = ".csv" + compression.getSuffix();
+        this.formats = new FormatTables(config);
+        this.memory = Math.max(0, ((Number) config.getOrDefault("partitionMemory", DEFAULT_MEMORY)).longValue());
+        this.bufferSize = Math.max(1, ((Number) config.getOrDefault("partitionBufferSize",
+                (long) DEFAULT_BUFFER_SIZE)).intValue());
+        this.cellBuckets = ((Number) config.getOrDefault("partitionCellBuckets", 0L)).intValue();
+        this.rows = new CsvWriter(new RowChannel(), config, formats, ROW_BUFFER_SIZE);
+    }
+
+    /**
+     * Writes all the calls of a person.
+     * @param p The person
+     * @throws IOException If a file can't be written
+     */
+    public void write(Person p) throws IOException {
+        for (Call call : p.getCalls()) {
+            write(p.getNumber(), call);
+        }
+    }
+
+    /**
+     * Writes a call to its partition.
+     * @param callingNumber The number of the person who made the call
+     * @param call The call
+     * @throws IOException If a file can't be written
+     */
+    @Override
+    public void write(long callingNumber, Call call) throws IOException {
+        long day = Math.floorDiv(formats.toLocalMillis(call.getStartSecond() * 1000), MILLIS_PER_DAY);
+        long partition = (cellBuckets > 0)
+                ? day * cellBuckets + getBucket(call.getCells(), call.getCellIndex())
+                : day;
+
+        target = partitions.get(partition);
+        if (target == null) {
+            target = new Partition(dir.resolve(getPartitionName(partition))
+                    .resolve(String.format("%s-%05d%s", prefix, 0, suffix)));
+            partitions.put(partition, target);
+            files.add(target.file);
+
+            rows.writeHeaders();
+            rows.flush();
+        }
+
+        rows.write(callingNumber, call);
+        rows.flush();
+
+        while (buffered > memory) {
+            // a buffer written when full is kept, so it may be empty and still take memory
+            Partition largest = null;
+            for (Partition p : partitions.values()) {
+                if (p.buffer != null && (largest == null || p.length > largest.length)) {
+                    largest = p;
+                }
+            }
+            largest.flush();
+            largest.free();
+        }
+    }
+
+    private int getBucket(CellStore cells, int cell) {
+        if (cells != bucketCells) {
+            buckets = new int[cells.size()];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = Math.floorMod(cells.getId(i).hashCode(), cellBuckets);
+            }
+            bucketCells = cells;
+        }
+        return buckets[cell];
+    }
+
+    private String getPartitionName(long partition) {
+        if (cellBuckets <= 0) {
+            return getDayName(partition);
+        }
+        return getDayName(Math.floorDiv(partition, cellBuckets))
+                + "/cell_bucket=" + Math.floorMod(partition, cellBuckets);
+    }
+
+    private static String getDayName(long day) {
+        return "dt=" + new LocalDate(day * MILLIS_PER_DAY, DateTimeZone.UTC).toString("yyyy-MM-dd");
+    }
+
+    /**
+     * @return The files of the partitions
+     */
+    public List<Path> getFiles() {
+        return files;
+    }
+
+    /**
+     * Writes the buffered rows of all the partitions.
+     * @throws IOException If a file can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (Partition p : partitions.values()) {
+                p.flush();
+            }
+        } finally {
+            for (Partition p : partitions.values()) {
+                p.free();
+            }
+            rows.close();
+        }
+    }
+
+    /**
+     * The file of a partition and its rows not written yet.
+     */
+    private final class Partition {
+        final Path file;
+        byte[] buffer;
+        int length;
+        boolean created;
+
+        Partition(Path file) {
+            this.file = file;
+        }
+
+        void add(ByteBuffer src) throws IOException {
+            int count = src.remaining();
+            if (length > 0 && length + count > bufferSize) {
+                flush();
+            }
+
+            int capacity = (buffer != null) ? buffer.length : 0;
+            if (length + count > capacity) {
+                int newCapacity = Math.max(length + count,
+                        Math.min(bufferSize, Math.max(INITIAL_BUFFER_SIZE, capacity * 2)));
+                buffer = (buffer != null) ? Arrays.copyOf(buffer, newCapacity) : new byte[newCapacity];
+                buffered += newCapacity - capacity;
+            }
+
+            src.get(buffer, length, count);
+            length += count;
+        }
+
+        /**
+         * Appends the buffered rows to the file, as a single block when
+         * compressed, creating the file the first time.
+         */
+        void flush() throws IOException {
+            if (length == 0) {
+                return;
+            }
+
+            if (!created) {
+                Files.createDirectories(file.getParent());
+            }
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    created ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer data = (compression == Compression.NONE) ? ByteBuffer.wrap(buffer, 0, length)
+                        : ByteBuffer.wrap(compression.compress(buffer, length));
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            }
+
+            created = true;
+            length = 0;
+        }
+
+        void free() {
+            if (buffer != null) {
+                buffered -= buffer.length;
+                buffer = null;
+            }
+            length = 0;
+        }
+    }
+
+    /**
+     * Channel that moves each formatted row to the buffer of its partition.
+     */
+    private final class RowChannel implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int count = src.remaining();
+            if (count > 0) {
+                target.add(src);
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -10,7 +10,7 @@ import java.util.Map;
  * @author Maycon Viana Bordin <mayconbordin@gmail.com>
  */
 public class Person {
-    private String phoneNumber;
+    private long number;
     private int phoneLines;
     
     // summary info
@@ -23,11 +23,23 @@ public class Person {
     private List<Call> calls;
 
     public String getPhoneNumber() {
-        return phoneNumber;
+        return PhoneNumberGenerator.toString(number);
     }
 
     public void setPhoneNumber(String phoneNumber) {
-        this.phoneNumber = phoneNumber;
+        this.number = PhoneNumberGenerator.parse(phoneNumber);
+    }
+
+    /**
+     * @return The phone number, as a number
+     * @see PhoneNumberGenerator#toString(long)
+     */
+    public long getNumber() {
+        return number;
+    }
+
+    public void setNumber(long number) {
+        this.number = number;
     }
 
     public int getPhoneLines() {
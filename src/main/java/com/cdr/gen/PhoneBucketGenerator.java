@@ -1,9 +1,8 @@
 package com.cdr.gen;
 
-import com.cdr.gen.util.RandomGaussian;
-import java.util.ArrayList;
+import com.cdr.gen.util.GaussianSampler;
+import com.cdr.gen.util.Rng;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -11,49 +10,63 @@ import java.util.Map;
  * @author Maycon Viana Bordin <mayconbordin@gmail.com>
  */
 public class PhoneBucketGenerator {
+    private static final int LOCAL_PREFIX_LENGTH = 4;
+    private static final long LOCAL_SUBSCRIBERS = 10000000L;
+    
     private Map<String, Object> outgoingNumberDist;
+    private PhoneCodeTable phoneCodes;
 
     public PhoneBucketGenerator(Map<String, Object> config) {
         outgoingNumberDist = (Map<String, Object>) config.get("outgoingNumberDistribution");
-        
+        phoneCodes = PhoneCodeTable.get((String) config.getOrDefault("phoneCodesFile", PhoneCodeTable.PHONE_CODES_CSV));
     }
     
     /**
      * Create the set of random phone number based on the frequency of each call type.
      * @param p The person for which the phone numbers will be generated.
      * @param callTypeSummary The frequency of each call type
+     * @param rng The random number generator
      * @return The generated numbers, separated by type of call
      */
-    public Map<String, List<String>> createPhoneBucket(Person p, Map<String, Integer> callTypeSummary) {
+    public Map<String, long[]> createPhoneBucket(Person p, Map<String, Integer> callTypeSummary, Rng rng) {
         Map<String, Long> params;
-        Map<String, List<String>> destPhoneNumbers = new HashMap<String, List<String>>(callTypeSummary.size());
+        Map<String, long[]> destPhoneNumbers = new HashMap<String, long[]>(callTypeSummary.size());
+        
+        // local calls keep the first digits of the person's number
+        long localPrefix = p.getNumber() / LOCAL_SUBSCRIBERS;
         
         for (Map.Entry<String, Integer> e : callTypeSummary.entrySet()) {
             params = (Map<String, Long>) outgoingNumberDist.get(e.getKey());
             
-            RandomGaussian gauss = RandomGaussian.generate(
-                    params.get("stdDev"), params.get("mean"));
+            double gauss = GaussianSampler.next(
+                    params.get("stdDev"), params.get("mean"), rng);
             
-            Double count = Math.ceil((e.getValue() / 100.0) * Math.abs(gauss.getValueOne()));
-            int phoneCount = (count > 0) ? count.intValue() : 1;
-            
-            if (!destPhoneNumbers.containsKey(e.getKey())) {
-                destPhoneNumbers.put(e.getKey(), new ArrayList<String>(phoneCount));
-            }
+            double count = Math.ceil((e.getValue() / 100.0) * Math.abs(gauss));
+            int phoneCount = (count > 0) ? (int) count : 1;
             
-            String phoneNumber;
-            String code = p.getPhoneNumber().substring(0, 4);
+            long[] phoneNumbers = new long[phoneCount];
             
-            for (int i=0; i<phoneCount; i++) {
-                if (e.getKey().equals("Local")) {
-                    phoneNumber = code + PhoneNumberGenerator.getRandomNumber(7);
-                } else {
-                    String destCode = PhoneNumberGenerator.getRandomPhoneCode(e.getKey(), code);
-                    phoneNumber = destCode + PhoneNumberGenerator.getRandomNumber(11 - destCode.length());
+            if (e.getKey().equals("Local")) {
+                for (int i=0; i<phoneCount; i++) {
+                    phoneNumbers[i] = PhoneNumberGenerator.getRandomNumber(localPrefix, LOCAL_PREFIX_LENGTH, rng);
+                }
+            } else {
+                int type = phoneCodes.getType(e.getKey());
+                if (type < 0) {
+                    throw new RuntimeException("No phone codes for calls of type " + e.getKey());
+                }
+                
+                // other types of call don't go to the person's own code
+                int excluded = phoneCodes.indexOf(type, localPrefix, LOCAL_PREFIX_LENGTH);
+                
+                for (int i=0; i<phoneCount; i++) {
+                    int destCode = phoneCodes.getRandomCode(type, excluded, rng);
+                    phoneNumbers[i] = PhoneNumberGenerator.getRandomNumber(
+                            phoneCodes.getCode(type, destCode), phoneCodes.getCodeLength(type, destCode), rng);
                 }
-
-                destPhoneNumbers.get(e.getKey()).add(phoneNumber);
             }
+            
+            destPhoneNumbers.put(e.getKey(), phoneNumbers);
         }
         
         return destPhoneNumbers;
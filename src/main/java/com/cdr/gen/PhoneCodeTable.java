@@ -0,0 +1,249 @@
+package com.cdr.gen;
+
+import com.cdr.gen.util.JavaUtils;
+import com.cdr.gen.util.Rng;
+import org.apache.log4j.Logger;
+import org.supercsv.io.CsvListReader;
+import org.supercsv.io.ICsvListReader;
+import org.supercsv.prefs.CsvPreference;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-only table of phone codes by type of call. The codes of each type are
+ * kept as numbers with their number of digits, since codes may start with
+ * zeros, sorted so that a code is found with a binary search.
+ *
+ * Tables are loaded from a CSV file (<code>typeName;StartNumber</code>) and are
+ * shared by all the threads that load the same file.
+ */
+public final class PhoneCodeTable {
+    private static final Logger LOG = Logger.getLogger(PhoneCodeTable.class);
+    public static final String PHONE_CODES_CSV = "/phone_codes.csv";
+    private static final Map<String, PhoneCodeTable> TABLES = new ConcurrentHashMap<>();
+
+    private final Map<String, Integer> typeIndex;
+    private final List<String> types;
+    private final long[][] codes;
+    private final byte[][] lengths;
+
+    private PhoneCodeTable(Map<String, List<String>> codesByType) {
+        int numTypes = codesByType.size();
+        Map<String, Integer> index = new LinkedHashMap<>(numTypes * 2);
+
+        codes = new long[numTypes][];
+        lengths = new byte[numTypes][];
+
+        for (Map.Entry<String, List<String>> e : codesByType.entrySet()) {
+            int type = index.size();
+            index.put(e.getKey(), type);
+
+            // sort by length and then by value, the same order as the keys
+            long[] keys = new long[e.getValue().size()];
+            for (int i = 0; i < keys.length; i++) {
+                String code = e.getValue().get(i);
+                keys[i] = key(Long.parseLong(code), code.length());
+            }
+            Arrays.sort(keys);
+
+            codes[type] = new long[keys.length];
+            lengths[type] = new byte[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                codes[type][i] = keys[i] & 0x0fffffffffffffffL;
+                lengths[type][i] = (byte) (keys[i] >>> 60);
+            }
+        }
+
+        typeIndex = Collections.unmodifiableMap(index);
+        types = Collections.unmodifiableList(new ArrayList<>(index.keySet()));
+    }
+
+    /**
+     * @return The codes of the default phone codes file
+     */
+    public static PhoneCodeTable getDefault() {
+        return get(PHONE_CODES_CSV);
+    }
+
+    /**
+     * Returns the codes of a file, loading it only the first time.
+     * @param file The CSV file with the codes
+     * @return The codes
+     */
+    public static PhoneCodeTable get(String file) {
+        return TABLES.computeIfAbsent(file, f -> {
+            try {
+                LOG.info("Loading phone codes file " + f + ".");
+                return load(f);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Error while reading the phone codes file " + f, ex);
+            }
+        });
+    }
+
+    private static PhoneCodeTable load(String file) throws IOException {
+        if (JavaUtils.isJar() && file.equals(PHONE_CODES_CSV)) {
+            return load(PhoneCodeTable.class.getResourceAsStream(file));
+        }
+
+        if (file.equals(PHONE_CODES_CSV)) {
+            file = "src/main/resources" + file;
+        }
+
+        try (InputStream is = new FileInputStream(file)) {
+            return load(is);
+        }
+    }
+
+    /**
+     * Reads the codes from a CSV stream.
+     * @param is The CSV stream
+     * @return The codes
+     * @throws IOException If the stream can't be read
+     */
+    public static PhoneCodeTable load(InputStream is) throws IOException {
+        Map<String, List<String>> codesByType = new LinkedHashMap<>();
+
+        ICsvListReader listReader = new CsvListReader(new InputStreamReader(is, StandardCharsets.UTF_8),
+                CsvPreference.EXCEL_NORTH_EUROPE_PREFERENCE);
+        listReader.getHeader(true);
+
+        List<String> row;
+        while ((row = listReader.read()) != null) {
+            String code = row.get(1);
+
+            if (code.isEmpty() || code.length() > PhoneNumberGenerator.NUMBER_LENGTH || !isDigits(code)) {
+                throw new IOException("Invalid phone code \"" + code + "\" at line " + listReader.getLineNumber());
+            }
+
+            codesByType.computeIfAbsent(row.get(0), t -> new ArrayList<>()).add(code);
+        }
+
+        listReader.close();
+
+        return new PhoneCodeTable(codesByType);
+    }
+
+    private static boolean isDigits(String code) {
+        for (int i = 0; i < code.length(); i++) {
+            if (code.charAt(i) < '0' || code.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long key(long code, int length) {
+        return ((long) length << 60) | code;
+    }
+
+    /**
+     * @return The types of call with codes, in the order of their index
+     */
+    public List<String> getTypes() {
+        return types;
+    }
+
+    /**
+     * @param type The type of call
+     * @return The index of the type of call, or -1 if it has no codes
+     */
+    public int getType(String type) {
+        Integer index = typeIndex.get(type);
+        return (index != null) ? index : -1;
+    }
+
+    /**
+     * @return The number of codes of a type of call
+     */
+    public int size(int type) {
+        return codes[type].length;
+    }
+
+    /**
+     * @return The digits of a code, as a number
+     */
+    public long getCode(int type, int index) {
+        return codes[type][index];
+    }
+
+    /**
+     * @return The number of digits of a code
+     */
+    public int getCodeLength(int type, int index) {
+        return lengths[type][index];
+    }
+
+    /**
+     * @return The digits of a code
+     */
+    public String getCodeString(int type, int index) {
+        String digits = Long.toString(codes[type][index]);
+        StringBuilder sb = new StringBuilder(lengths[type][index]);
+
+        for (int i = digits.length(); i < lengths[type][index]; i++) {
+            sb.append('0');
+        }
+
+        return sb.append(digits).toString();
+    }
+
+    /**
+     * @param type The index of the type of call
+     * @param code The digits of the code, as a number
+     * @param length The number of digits of the code
+     * @return The index of the code, or -1 if the type has no such code
+     */
+    public int indexOf(int type, long code, int length) {
+        long key = key(code, length);
+        int low = 0;
+        int high = codes[type].length - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = key(codes[type][mid], lengths[type][mid]);
+
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Picks a random code of a type of call, other than the excluded code.
+     * If the excluded code is the only code of the type, it is returned.
+     * @param type The index of the type of call
+     * @param excluded The index of the code to exclude, or -1 to pick any code
+     * @param rng The random number generator
+     * @return The index of the code
+     */
+    public int getRandomCode(int type, int excluded, Rng rng) {
+        int count = codes[type].length;
+
+        if (excluded < 0 || count == 1) {
+            return rng.nextInt(count);
+        }
+
+        // draw among the other codes and skip over the excluded one
+        int index = rng.nextInt(count - 1);
+        return (index >= excluded) ? index + 1 : index;
+    }
+}
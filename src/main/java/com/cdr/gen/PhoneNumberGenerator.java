@@ -1,107 +1,84 @@
 package com.cdr.gen;
 
-import com.cdr.gen.util.IOUtils;
-import com.cdr.gen.util.JavaUtils;
-import com.cdr.gen.util.RandomUtil;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.StringReader;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Random;
-import org.apache.log4j.Logger;
-import org.supercsv.io.CsvListReader;
-import org.supercsv.io.ICsvListReader;
-import org.supercsv.prefs.CsvPreference;
+import com.cdr.gen.util.Rng;
 
 /**
- * Generates phone numbers and codes.
+ * Generates phone numbers.
+ * @see PhoneCodeTable
  * @author Maycon Viana Bordin <mayconbordin@gmail.com>
  */
 public class PhoneNumberGenerator {
-    private static final Logger LOG = Logger.getLogger(PhoneNumberGenerator.class);
-    private static final String PHONE_CODES_CSV = "/phone_codes.csv";
-    public static final Map<String, List<String>> PHONE_CODES = new HashMap<String, List<String>>();
+    /** The number of digits of a phone number, including the code */
+    public static final int NUMBER_LENGTH = 11;
+    private static final long[] POWERS_OF_TEN = new long[19];
     
     static {
-        try {            
-            LOG.info("Loading phone codes file.");
-            ICsvListReader listReader;
-            
-            if (JavaUtils.isJar()) {
-                InputStream is = PhoneNumberGenerator.class.getResourceAsStream(PHONE_CODES_CSV);
-                listReader = new CsvListReader(
-                        new StringReader(IOUtils.convertStreamToString(is)),
-                        CsvPreference.EXCEL_NORTH_EUROPE_PREFERENCE);
-            } else {
-                listReader = new CsvListReader(
-                        new FileReader("src/main/resources" + PHONE_CODES_CSV), 
-                        CsvPreference.EXCEL_NORTH_EUROPE_PREFERENCE);
-            }
-            
-            listReader.getHeader(true);
-                        
-            List<String> customerList;
-            while( (customerList = listReader.read()) != null ) {
-                String typeName = customerList.get(0);
-                String startNumber = customerList.get(1);
-                
-                if (!PHONE_CODES.containsKey(typeName)) {
-                    PHONE_CODES.put(typeName, new ArrayList<String>());
-                }
-                
-                PHONE_CODES.get(typeName).add(startNumber);
-            }
-            
-            listReader.close();
-        } catch (FileNotFoundException ex) {
-            LOG.error("Unable to find phone codes file.", ex);
-        } catch (IOException ex) {
-            LOG.error("Error while reading the phones code file.", ex);
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
         }
     }
     
     /**
      * Generates a random phone number.
      * @param numDigits The number of digits
+     * @param rng The random number generator
      * @return The random phone number
      */
-    public static String getRandomNumber(int numDigits) {
-        Random rnd = new Random(System.currentTimeMillis());
-        
-        String number = "";
-        for (int i=0; i<numDigits; i++) {
-            number += RandomUtil.randInt(0, 9);
-        }
-        
-        return number;
+    public static String getRandomNumber(int numDigits, Rng rng) {
+        return format(rng.nextLong(POWERS_OF_TEN[numDigits]), numDigits);
+    }
+    
+    /**
+     * Generates a random phone number of {@link #NUMBER_LENGTH} digits, starting
+     * with the given prefix.
+     * @param prefix The digits of the prefix, as a number
+     * @param prefixLength The number of digits of the prefix
+     * @param rng The random number generator
+     * @return The phone number, as a number
+     */
+    public static long getRandomNumber(long prefix, int prefixLength, Rng rng) {
+        long subscribers = POWERS_OF_TEN[NUMBER_LENGTH - prefixLength];
+        return prefix * subscribers + rng.nextLong(subscribers);
+    }
+    
+    /**
+     * @param number A phone number, as a number
+     * @return The phone number with {@link #NUMBER_LENGTH} digits
+     */
+    public static String toString(long number) {
+        return format(number, NUMBER_LENGTH);
     }
     
     /**
-     * Returns a randomly picked phone code
-     * @param callType The type of call for the phone code
-     * @param currCode The code to be excluded from the returned code
-     * @return The phone code
+     * Writes the {@link #NUMBER_LENGTH} digits of a phone number as ASCII.
+     * @param number A phone number, as a number
+     * @param dest The destination array
+     * @param pos The position in the destination array
+     * @return The number of bytes written
      */
-    public static String getRandomPhoneCode(String callType, String currCode) {
-        int num;
-        String code = "";
-        
-        if (!PHONE_CODES.containsKey(callType)) {
-            return null;
+    public static int write(long number, byte[] dest, int pos) {
+        for (int i = pos + NUMBER_LENGTH - 1; i >= pos; i--) {
+            dest[i] = (byte) ('0' + number % 10);
+            number /= 10;
         }
-        
-        do {
-            num = RandomUtil.randInt(0, PHONE_CODES.get(callType).size()-1);
-            code = PHONE_CODES.get(callType).get(num);
-        } while (code.equals(currCode));
-        
-        return code;
+        return NUMBER_LENGTH;
     }
     
+    /**
+     * @param number A phone number with {@link #NUMBER_LENGTH} digits
+     * @return The phone number, as a number
+     */
+    public static long parse(String number) {
+        return Long.parseLong(number);
+    }
     
+    private static String format(long number, int numDigits) {
+        char[] digits = new char[numDigits];
+        for (int i = numDigits - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+        return new String(digits);
+    }
 }
@@ -1,17 +1,17 @@
 package com.cdr.gen;
 
 import com.cdr.gen.util.RandomUtil;
-import com.cdr.gen.util.RandomGaussian;
+import com.cdr.gen.util.GaussianSampler;
+import com.cdr.gen.util.Rng;
 
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
-import org.joda.time.Interval;
-import org.joda.time.format.DateTimeFormat;
 
 /**
  * This class creates the defined number of customers and a set of calls following
@@ -21,7 +21,16 @@ import org.joda.time.format.DateTimeFormat;
  */
 public class Population {
     private static final Logger LOG = Logger.getLogger(Population.class);
+    private static final int DEFAULT_CHUNK_SIZE = 256;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int MAX_PLACEMENT_ATTEMPTS = 100;
+    // mixed into the seed of the generator of the ids
+    private static final long ID_STREAM = 0x6964737472656d4cL;
+
+    private Map<String, Object> config;
     private int size;
+    private int chunkSize;
+    private boolean freePlacement;
     private int fraudCount;
     private int fraudDistance;
     private boolean fraudForceAll;
@@ -36,39 +45,215 @@ public class Population {
     private DateTimeDistribution dateTimeDist;
 
     private PhoneBucketGenerator phoneBucketGen;
-    private Map<String, Cell> lastPhoneNumberCell;
+    private SubscriberNumbering numbering;
+    private IdGenerator idGenerator;
+    // skip the work of the columns that aren't written
+    private boolean generateIds;
+    private boolean computeCost;
+    private long firstAccount;
+
+    // the minutes taken by the calls of the person being created
+    private CallSchedule schedule;
+
+    private GaussianSampler callsMadeSampler;
+    private GaussianSampler phoneLinesSampler;
+    private Map<String, GaussianSampler> avgCallDurationSamplers;
+    private Map<String, GaussianSampler> avgOffPeakCallDurationSamplers;
     
-    private Random random;
+    private long seed;
+    private Rng rng;
+    private Rng idRng;
     
+    /**
+     * Creates the population. The random number generator is seeded with the
+     * <code>seed</code> configuration, if present, so that the same seed always
+     * creates the same population, regardless of the number of threads.
+     * @param config The configuration
+     */
     public Population(Map<String, Object> config) {
+        this.config = config;
         this.size  = ((Long)config.get("numAccounts")).intValue();
+        this.chunkSize = ((Number) config.getOrDefault("chunkSize", (long) DEFAULT_CHUNK_SIZE)).intValue();
+        this.freePlacement = "free".equals(config.getOrDefault("callPlacement", "retry"));
         Map<String, Object> fraud = (Map<String, Object>)config.get("fraud");
         this.fraudCount = ((Long) fraud.get("count")).intValue();
         this.fraudDistance = ((Long) fraud.get("distance")).intValue();
-        this.fraudForceAll = "true".equals(fraud.get("forceAll").toString());
+        // calls are only marked as unusual when fraud calls are injected
+        this.fraudForceAll = "true".equals(fraud.get("forceAll").toString()) && fraudCount > 0;
         callsMade  = (Map<String, Long>) config.get("callsMade");
         phoneLines = (Map<String, Long>) config.get("phoneLines");
         callTypes  = (List<String>) config.get("callTypes");
         outgoingCallParams = (Map<String, Object>) config.get("outgoingCallParams");
-        population = new ArrayList<Person>(size);
-
-        lastPhoneNumberCell = new HashMap<>();
+        population = new ArrayList<Person>();
 
-        cellDist = new CellDistribution();
+        cellDist = new CellDistribution(config);
         callDist = new CallDistribution(config);
         dateTimeDist = new DateTimeDistribution(config);
         
         phoneBucketGen = new PhoneBucketGenerator(config);
+
+        callsMadeSampler = getGaussianSampler(callsMade.get("stdDev"), callsMade.get("mean"));
+        phoneLinesSampler = getGaussianSampler(phoneLines.get("stdDev"), phoneLines.get("mean"));
+        avgCallDurationSamplers = getAvgCallDurationSamplers(false);
+        avgOffPeakCallDurationSamplers = getAvgCallDurationSamplers(true);
+        
+        seed = config.containsKey("seed") 
+                ? ((Number) config.get("seed")).longValue() : System.nanoTime();
+        rng = new Rng(seed);
+        idRng = new Rng(seed ^ ID_STREAM);
+        
+        firstAccount = ((Number) config.getOrDefault("firstAccount", 0L)).longValue();
+        long numberingKey = config.containsKey("numberingKey")
+                ? ((Number) config.get("numberingKey")).longValue() : seed;
+        numbering = createNumbering(config, numberingKey);
+        idGenerator = IdGenerator.create(config, firstAccount);
+        
+        List<Column> columns = Column.fromConfig(config);
+        generateIds = columns.contains(Column.UUID);
+        computeCost = columns.contains(Column.COST);
         
-        random = new Random(System.currentTimeMillis());
+        if (firstAccount < 0 || firstAccount + size > numbering.size()) {
+            throw new RuntimeException("Accounts " + firstAccount + " to " + (firstAccount + size)
+                    + " are out of the " + numbering.size() + " phone numbers available");
+        }
+    }
+
+    /**
+     * Creates a partition of the population. The partition shares the distributions
+     * of the population, but has its own random number generators, which depend
+     * only on the seed and on the absolute index of the first account of the
+     * partition. The ids are drawn from a generator of their own, so that the
+     * id strategy and the columns don't change the rest of the calls.
+     * @param parent The population being partitioned
+     * @param firstAccount The index of the first account of the partition
+     * @param numAccounts The number of accounts in the partition
+     */
+    protected Population(Population parent, int firstAccount, int numAccounts) {
+        this.config = parent.config;
+        this.size = numAccounts;
+        this.chunkSize = parent.chunkSize;
+        this.freePlacement = parent.freePlacement;
+
+        // the fraud calls are spread among the partitions proportionally to their size
+        long totalFraudCount = parent.fraudCount;
+        long totalAccounts = parent.size;
+        this.fraudCount = (int) ((firstAccount + numAccounts) * totalFraudCount / totalAccounts
+                - firstAccount * totalFraudCount / totalAccounts);
+        this.fraudDistance = parent.fraudDistance;
+        this.fraudForceAll = parent.fraudForceAll;
+        callsMade = parent.callsMade;
+        phoneLines = parent.phoneLines;
+        callTypes = parent.callTypes;
+        outgoingCallParams = parent.outgoingCallParams;
+        population = new ArrayList<Person>();
+
+        cellDist = parent.cellDist;
+        callDist = parent.callDist;
+        dateTimeDist = parent.dateTimeDist;
+
+        phoneBucketGen = parent.phoneBucketGen;
+        numbering = parent.numbering;
+        this.firstAccount = parent.firstAccount + firstAccount;
+        idGenerator = IdGenerator.create(config, this.firstAccount);
+        generateIds = parent.generateIds;
+        computeCost = parent.computeCost;
+
+        callsMadeSampler = parent.callsMadeSampler;
+        phoneLinesSampler = parent.phoneLinesSampler;
+        avgCallDurationSamplers = parent.avgCallDurationSamplers;
+        avgOffPeakCallDurationSamplers = parent.avgOffPeakCallDurationSamplers;
+
+        seed = parent.seed;
+        // keyed on the absolute account, so processes with disjoint ranges get distinct streams
+        rng = Rng.forStream(seed, this.firstAccount);
+        idRng = Rng.forStream(seed ^ ID_STREAM, this.firstAccount);
     }
     
     /**
-     * Create the population
+     * Create the population, keeping every person and call in memory. Use
+     * {@link #create(Consumer)} for large populations.
      */
     public void create() {
-        RandomGaussian gaussNum;
+        population = new ArrayList<Person>(size);
+        create(population::add);
+    }
+
+    /**
+     * Create the population handing each person, with its calls, to the consumer
+     * as soon as it is generated. Only one chunk of <code>chunkSize</code> persons
+     * is kept in memory at a time, so memory usage does not depend on the number
+     * of accounts.
+     * @param consumer The consumer of the generated persons
+     */
+    public void create(Consumer<Person> consumer) {
+        create(consumer, 1);
+    }
+
+    /**
+     * Create the population splitting the accounts in chunks of <code>chunkSize</code>
+     * accounts, that are generated concurrently, each one with its own random
+     * number generator. The persons are handed to the consumer in the same order
+     * as in {@link #create(Consumer)}, from the calling thread, and at most twice as
+     * many chunks as threads are kept in memory. The generated population does
+     * not depend on the number of threads.
+     * @param consumer The consumer of the generated persons
+     * @param parallelism The number of threads generating chunks
+     */
+    public void create(Consumer<Person> consumer, int parallelism) {
+        // chunks must hold an even number of accounts, since they are created in pairs
+        int chunk = Math.max(2, chunkSize + (chunkSize % 2));
+
+        if (parallelism <= 1) {
+            for (int first=0; first<size; first+=chunk) {
+                new Population(this, first, Math.min(chunk, size - first)).createPartition().forEach(consumer);
+            }
+            return;
+        }
+
+        int maxPending = parallelism * 2;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Deque<Future<List<Person>>> pending = new ArrayDeque<>(maxPending);
+
+        try {
+            int next = 0;
+
+            while (next < size || !pending.isEmpty()) {
+                while (next < size && pending.size() < maxPending) {
+                    int first = next;
+                    int count = Math.min(chunk, size - next);
+
+                    pending.add(pool.submit(() -> new Population(this, first, count).createPartition()));
+                    next += chunk;
+                }
+
+                pending.poll().get().forEach(consumer);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while creating the population", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Error while creating the population", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
 
+    /**
+     * Creates the persons of a partition and injects the fraud calls of the partition.
+     * @return The persons
+     */
+    private List<Person> createPartition() {
+        List<Person> persons = new ArrayList<>(size + 1);
+        generate(persons::add);
+        injectFraudCalls(persons);
+        return persons;
+    }
+
+    /**
+     * Generates the persons and their calls, two at a time.
+     * @param consumer The consumer of the generated persons
+     */
+    protected void generate(Consumer<Person> consumer) {
         for (int i=0; i<size; i+=2) {
             LOG.debug("Creating person " + (i+1) + " and " + (i+2));
             Person personOne = new Person();
@@ -76,37 +261,34 @@ public class Population {
             
             // create the phone number
             LOG.debug("Generating phone numbers");
-            personOne.setPhoneNumber(getRandomPhoneNumber());
-            personTwo.setPhoneNumber(getRandomPhoneNumber());
+            personOne.setNumber(getPhoneNumber(firstAccount + i));
+            personTwo.setNumber(getPhoneNumber(firstAccount + i + 1));
             
             // calculate the number of calls made
             LOG.debug("Calculating number of calls made");
-            gaussNum = getRandomGaussian(callsMade.get("stdDev"), callsMade.get("mean"));
-
-            personOne.setNumCalls(gaussNum.getValueOne().longValue());
-            personTwo.setNumCalls(gaussNum.getValueTwo().longValue());
+            personOne.setNumCalls((long) callsMadeSampler.next(rng));
+            personTwo.setNumCalls((long) callsMadeSampler.next(rng));
             
             // calculate the average duration of a call per type
             LOG.debug("Calculating the average duration of a call per type");
             for (String callType : callTypes) {
                 // peak time
-                gaussNum = getAvgCallDuration(callType, false);
-                personOne.getAvgCallDuration().put(callType, gaussNum.getValueOne().longValue());
-                personTwo.getAvgCallDuration().put(callType, gaussNum.getValueTwo().longValue());
+                GaussianSampler sampler = avgCallDurationSamplers.get(callType);
+                personOne.getAvgCallDuration().put(callType, (long) sampler.next(rng));
+                personTwo.getAvgCallDuration().put(callType, (long) sampler.next(rng));
                 
                 // off peak
-                gaussNum = getAvgCallDuration(callType, true);
-                personOne.getAvgOffPeakCallDuration().put(callType, gaussNum.getValueOne().longValue());
-                personTwo.getAvgOffPeakCallDuration().put(callType, gaussNum.getValueTwo().longValue());
+                sampler = avgOffPeakCallDurationSamplers.get(callType);
+                personOne.getAvgOffPeakCallDuration().put(callType, (long) sampler.next(rng));
+                personTwo.getAvgOffPeakCallDuration().put(callType, (long) sampler.next(rng));
             }
             
             // generate the number of phone lines
             LOG.debug("Generating the number of phone lines");
             if (phoneLines.get("mean") > 1) {
                 if (phoneLines.get("stdDev") > 1) {
-                    gaussNum = getRandomGaussian(phoneLines.get("stdDev"), phoneLines.get("mean"));
-                    personOne.setPhoneLines(gaussNum.getValueOne().intValue());
-                    personTwo.setPhoneLines(gaussNum.getValueTwo().intValue());
+                    personOne.setPhoneLines((int) phoneLinesSampler.next(rng));
+                    personTwo.setPhoneLines((int) phoneLinesSampler.next(rng));
                 } else {
                     personOne.setPhoneLines(((Long)phoneLines.get("mean")).intValue());
                     personTwo.setPhoneLines(((Long)phoneLines.get("mean")).intValue());
@@ -123,103 +305,134 @@ public class Population {
             LOG.debug("Creating the calls for person " + (i+2));
             createCalls(personTwo);
 
-            population.add(personOne);
-            population.add(personTwo);
+            consumer.accept(personOne);
+            consumer.accept(personTwo);
         }
+    }
+
+    /**
+     * Marks the calls as fraud, as configured by <code>fraud.forceAll</code>, and
+     * appends to their owners a fraud copy of <code>fraudCount</code> calls, picked
+     * at random. The picked positions are sorted and resolved to their owners
+     * in a single pass over the persons.
+     * @param persons The persons whose calls will be copied
+     */
+    private void injectFraudCalls(List<Person> persons) {
+        long totalCalls = 0;
 
-        Stream<Call> callStream = population.stream()
-                .flatMap(p -> p.getCalls().stream());
+        for (Person p : persons) {
+            totalCalls += p.getCalls().size();
 
-        if (fraudForceAll) {
-            callStream = callStream.peek(c -> c.setFraud(Fraud.UNUSUAL));
+            if (fraudForceAll) {
+                for (Call c : p.getCalls()) {
+                    c.setFraud(Fraud.UNUSUAL);
+                }
+            }
         }
 
-        if (fraudCount > 0) {
-
-            List<Call> allCalls = callStream
-                    .collect(Collectors.toList());
-
-            // Create fraud calls
-            Random random = new Random();
-            List<Call> fraudCalls = random.ints(fraudCount, 0, allCalls.size())
-                    .mapToObj(allCalls::get)
-                    .map(Call::copy)
-                    .map(this::toFraudCall)
-                    .collect(Collectors.toList());
-
-            // Inject fraud calls
-            fraudCalls.forEach(c -> {
-                population.stream()
-                        .filter(p -> p.getCalls().contains(c))
-                        .findFirst()
-                        .orElseThrow(() -> new RuntimeException("No call found"))
-                        .getCalls().add(c.copyWithId(UUID.randomUUID()));
-            });
+        if (fraudCount == 0 || totalCalls == 0) {
+            return;
+        }
+
+        long[] picks = new long[fraudCount];
+        for (int i=0; i<fraudCount; i++) {
+            picks[i] = rng.nextLong(totalCalls);
+        }
+        Arrays.sort(picks);
+
+        int k = 0;
+        long offset = 0;
+
+        for (Person p : persons) {
+            List<Call> calls = p.getCalls();
+            int numCalls = calls.size();
+
+            for (; k < picks.length && picks[k] < offset + numCalls; k++) {
+                Call call = calls.get((int) (picks[k] - offset));
+                Call fraudCall = toFraudCall(call.copy());
+                if (generateIds) {
+                    idGenerator.next(fraudCall, idRng);
+                }
+                calls.add(fraudCall);
+            }
+
+            offset += numCalls;
         }
     }
 
     private Call toFraudCall(Call call) {
-        int diffStartTime = RandomUtil.randInt(5, 1500);
-        int callDurationInSec = RandomUtil.randInt(1, 600);
+        int diffStartTime = RandomUtil.randInt(5, 1500, rng);
+        int callDurationInSec = RandomUtil.randInt(1, 600, rng);
 
-        DateTime startCall = call.getTime().getStart().plusSeconds(diffStartTime);
-        DateTime endCall = startCall.plusSeconds(callDurationInSec);
-        call.setTime(new Interval(startCall, endCall));
+        call.setTime(call.getStartSecond() + diffStartTime, callDurationInSec);
 
         double distanceInMeters = fraudDistance * 1000;
-        Cell originalCell = call.getCell();
-        Cell otherCell = cellDist.getRandomCell(originalCell.getId(), distanceInMeters);
-        call.setType(callDist.getRandomCallType());
-        call.setCell(otherCell);
-        call.setDestPhoneNumber(createNewPhoneNumber(call.getDestPhoneNumber()));
-        call.setCost(dateTimeDist.getCallCost(call));
+        int otherCell = cellDist.getRandomCellIndex(call.getCellIndex(), distanceInMeters, rng);
+        call.setType(callDist.getRandomCallType(rng));
+        call.setCell(cellDist.getCells(), otherCell);
+        call.setDestNumber(createNewPhoneNumber(call.getDestNumber()));
+        if (computeCost) {
+            call.setCost(dateTimeDist.getCallCost(call));
+        }
         call.setFraud(Fraud.FAR);
         return call;
     }
 
-    private String createNewPhoneNumber(String phoneNumber) {
-        int phoneEnd = RandomUtil.randInt(1, 9999);
-        return String.format("%s%04d", phoneNumber.substring(0, phoneNumber.length() - 4), phoneEnd);
+    private long createNewPhoneNumber(long phoneNumber) {
+        // replace the last four digits
+        int phoneEnd = RandomUtil.randInt(1, 9999, rng);
+        return phoneNumber - phoneNumber % 10000 + phoneEnd;
     }
     
     /**
-     * Generates random gaussian numbers until they become greater than one.
+     * Creates a sampler of random gaussian numbers greater or equal to one.
      * @param stdDev The standard deviation
      * @param mean The average
-     * @return A set of two random numbers
+     * @return The sampler
      */
-    protected RandomGaussian getRandomGaussian(long stdDev, long mean) {
-        RandomGaussian gaussNum;
-        
-        do {
-            gaussNum = RandomGaussian.generate(stdDev, mean);
-        } while (gaussNum.getValueOne() < 1 || gaussNum.getValueTwo() < 1);
-        
-        return gaussNum;
+    protected GaussianSampler getGaussianSampler(long stdDev, long mean) {
+        return new GaussianSampler(stdDev, mean, 1);
     }
     
     /**
-     * Calculates a random average for the call duration of a given type.
-     * @param callType The type of call for which the average will be calculated
+     * Creates the samplers of the average call duration for each type of call.
      * @param offPeak A boolean informing if the average is for off peak or not
-     * @return A set of two random numbers
+     * @return The samplers, by call type
      */
-    protected RandomGaussian getAvgCallDuration(String callType, boolean offPeak) {
-        Map<String, Object> conf = (Map<String, Object>) outgoingCallParams.get(callType);
-        
+    protected Map<String, GaussianSampler> getAvgCallDurationSamplers(boolean offPeak) {
+        Map<String, GaussianSampler> samplers = new HashMap<>(callTypes.size());
         String meanKey = (offPeak) ? "callOPDur" : "callDur";
         String stdDevKey = (offPeak) ? "callOPStdDev" : "callStdDev";
+
+        for (String callType : callTypes) {
+            Map<String, Object> conf = (Map<String, Object>) outgoingCallParams.get(callType);
+            samplers.put(callType, getGaussianSampler((Long)conf.get(stdDevKey), (Long)conf.get(meanKey)));
+        }
+
+        return samplers;
+    }
+
+    private static SubscriberNumbering createNumbering(Map<String, Object> config, long key) {
+        PhoneCodeTable phoneCodes = PhoneCodeTable.get(
+                (String) config.getOrDefault("phoneCodesFile", PhoneCodeTable.PHONE_CODES_CSV));
+        int localCodes = phoneCodes.getType("Local");
         
-        return getRandomGaussian((Long)conf.get(stdDevKey), (Long)conf.get(meanKey));
+        if (localCodes < 0) {
+            throw new RuntimeException("No phone codes for Local calls");
+        }
+        
+        return new SubscriberNumbering(phoneCodes, localCodes, key);
     }
 
     /**
-     * Generates a random phone number of 11 digits.
-     * @return The randomly generated phone number
+     * Returns the phone number of 11 digits of an account. Distinct accounts
+     * always get distinct numbers.
+     * @param account The index of the account, counting the accounts before
+     *                <code>firstAccount</code>
+     * @return The phone number, as a number
      */
-    protected String getRandomPhoneNumber() {
-        String code = PhoneNumberGenerator.getRandomPhoneCode("Local", "");
-        return code + PhoneNumberGenerator.getRandomNumber(11 - code.length());
+    protected long getPhoneNumber(long account) {
+        return numbering.getNumber(account);
     }
     
     /**
@@ -228,7 +441,12 @@ public class Population {
      * @param p The person for which the calls will be made
      */
     protected void createCalls(Person p) {
-        Map<String, List<Interval>> usedTimes = new HashMap<String, List<Interval>>();
+        // the calls may be drawn up to a week before the start date and after the end date
+        int days = dateTimeDist.getDateRange() + 1;
+        if (schedule == null) {
+            schedule = new CallSchedule(-7 * MINUTES_PER_DAY, (days + 7) * MINUTES_PER_DAY);
+        }
+        schedule.clear();
 
         // create a list of call types for each call made
         // it is created beforehand so that we can generate the phone bucket
@@ -236,7 +454,7 @@ public class Population {
         Map<String, Integer> callTypeSummary = new HashMap<String, Integer>();
         
         for (int i=0; i<p.getNumCalls(); i++) {
-            String callType = callDist.getRandomCallType();
+            String callType = callDist.getRandomCallType(rng);
             
             if (callTypeSummary.containsKey(callType)) {
                 callTypeSummary.put(callType, callTypeSummary.get(callType)+1);
@@ -247,79 +465,130 @@ public class Population {
             listOfCallTypes[i] = callType;
         }
         
-        Map<String, List<String>> phoneBucket = phoneBucketGen.createPhoneBucket(p, callTypeSummary);
+        Map<String, long[]> phoneBucket = phoneBucketGen.createPhoneBucket(p, callTypeSummary, rng);
 
-        Cell lastCell = getLastPhoneNumberCell(p.getPhoneNumber());
+        int lastCell = cellDist.getRandomCellIndex(rng);
 
         for (int i=0; i<p.getNumCalls(); i++) {
             Call call = new Call();
-            call.setId(UUID.randomUUID());
-            call.setCell(lastCell);
+            call.setCell(cellDist.getCells(), lastCell);
             call.setType(listOfCallTypes[i]);
-            call.setLine((int) (random.nextDouble() * p.getPhoneLines() + 0.5));
+            call.setLine((int) (rng.nextDouble() * p.getPhoneLines() + 0.5));
             
             // pick a random destination phone number
-            call.setDestPhoneNumber(phoneBucket.get(listOfCallTypes[i]).get(
-                    RandomUtil.randInt(0, phoneBucket.get(listOfCallTypes[i]).size()-1)));
+            long[] destNumbers = phoneBucket.get(listOfCallTypes[i]);
+            call.setDestNumber(destNumbers[rng.nextInt(destNumbers.length)]);
             
             
             long avgCallDuration = p.getAvgCallDuration().get(call.getType());
             long avgOPCallDuration = p.getAvgOffPeakCallDuration().get(call.getType());
 
-            // pick a random date that doesn't overlap any other calls
+            // pick a random date that doesn't overlap any other calls, in minutes
+            // since the start date
+            DateTime dateTime;
+            int start, duration;
+            int attempts = 0;
+            
             do {
-                int currDay = dateTimeDist.getDayOfWeek();
-                int currDayName = dateTimeDist.getStartDate().plusDays(currDay).getDayOfWeek();
-                String type = (currDayName == 1 || currDayName == 7) 
-                        ? DateTimeDistribution.TYPE_WEEKEND 
-                        : DateTimeDistribution.TYPE_WEEKDAY;
+                int currDay = dateTimeDist.getDayOfWeek(rng);
+                DateTime day = dateTimeDist.getStartDate().plusDays(currDay);
+                int currDayName = day.getDayOfWeek();
+                boolean weekend = (currDayName == 1 || currDayName == 7);
+                int minuteOfDay = dateTimeDist.getMinuteOfDay(weekend, rng);
                 
-                DateTime dateTime = dateTimeDist.getDateTime(type, currDay);
-                int duration = dateTimeDist.getCallDuration(currDayName, 
+                dateTime = day.plusMinutes(minuteOfDay);
+                duration = dateTimeDist.getCallDuration(currDayName, 
                         call.getType(), dateTime.toLocalTime(), avgCallDuration, 
-                        avgOPCallDuration);
-                
-                call.setTime(new Interval(dateTime, dateTime.plusMinutes(duration)));
-            } while (callIntervalOverlap(usedTimes, call.getTime()));
+                        avgOPCallDuration, rng);
+                start = currDay * MINUTES_PER_DAY + minuteOfDay;
+            } while (!freePlacement && ++attempts < MAX_PLACEMENT_ATTEMPTS
+                    && schedule.overlaps(start, duration));
+            
+            // move the call to the free slot nearest to its time, within its day if
+            // possible, so that it keeps the shape of the distributions
+            if (schedule.overlaps(start, duration)) {
+                int free = findNearestFree(start, duration, days);
+
+                if (free != CallSchedule.NONE) {
+                    // the duration depends on the time of the call, so it is drawn again
+                    dateTime = getDateTime(free);
+                    int newDuration = dateTimeDist.getCallDuration(dateTime.getDayOfWeek(),
+                            call.getType(), dateTime.toLocalTime(), avgCallDuration,
+                            avgOPCallDuration, rng);
+
+                    if (!schedule.overlaps(free, newDuration)) {
+                        duration = newDuration;
+                    } else {
+                        int other = findNearestFree(free, newDuration, days);
+                        if (other != CallSchedule.NONE) {
+                            free = other;
+                            duration = newDuration;
+                            dateTime = getDateTime(free);
+                        }
+                    }
+                    start = free;
+                }
+            }
+
+            // the call overlaps another one only if no slot is free
+            schedule.add(start, duration);
+            
+            call.setTime(dateTime.getMillis() / 1000, duration * 60);
+            if (generateIds) {
+                idGenerator.next(call, idRng);
+            }
         
             // after the date has been picked, calculate the cost of the call
-            call.setCost(dateTimeDist.getCallCost(call));
+            if (computeCost) {
+                call.setCost(dateTimeDist.getCallCost(call));
+            }
             
             p.getCalls().add(call);
         }
     }
 
-    private Cell getLastPhoneNumberCell(String phoneNumber) {
-        Cell cell = lastPhoneNumberCell.get(phoneNumber);
-        if (cell == null) {
-            cell = cellDist.getRandomCell();
-            lastPhoneNumberCell.put(phoneNumber, cell);
+    /**
+     * Finds the free start nearest to a minute, first within its day and then
+     * widening the search by a day on each side, up to the date range.
+     * @param start The preferred start, in minutes since the start date
+     * @param duration The duration of the call, in minutes
+     * @param days The number of days of the date range
+     * @return The start, or {@link CallSchedule#NONE} if no slot is free
+     */
+    private int findNearestFree(int start, int duration, int days) {
+        int dayStart = Math.floorDiv(start, MINUTES_PER_DAY) * MINUTES_PER_DAY;
+        int first = Math.min(0, dayStart);
+        int last = Math.max(days * MINUTES_PER_DAY, dayStart + MINUTES_PER_DAY);
+
+        for (int widen = 0; ; widen++) {
+            int from = Math.max(first, dayStart - widen * MINUTES_PER_DAY);
+            int to = Math.min(last, dayStart + (widen + 1) * MINUTES_PER_DAY);
+            int free = schedule.findNearest(start, from, to, duration);
+
+            if (free != CallSchedule.NONE || (from == first && to == last)) {
+                return free;
+            }
         }
-        return cell;
     }
 
     /**
-     * Checks if a call time interval is already in use. This function is used to
-     * prevent to calls from the same person happening at the same time.
-     * @param usedTimes A collection which stores already consolidated time intervals
-     * @param time The time interval to be checked
-     * @return True if the time interval already exists or False otherwise
+     * @param minutes The minutes since the start date
+     * @return The date and time
      */
-    protected boolean callIntervalOverlap(Map<String, List<Interval>> usedTimes, Interval time) {
-        String date = time.getStart().toString(DateTimeFormat.forPattern("dd/MM/yyyy"));
-        
-        if (usedTimes.containsKey(date)) {
-            for (Interval i : usedTimes.get(date)) {
-                if (time.overlap(i) != null)
-                    return true;
-            }
-        } else {
-            usedTimes.put(date, new ArrayList<Interval>());
-        }
-        
-        usedTimes.get(date).add(time);
-        
-        return false;
+    private DateTime getDateTime(int minutes) {
+        return dateTimeDist.getStartDate().plusDays(Math.floorDiv(minutes, MINUTES_PER_DAY))
+                .plusMinutes(Math.floorMod(minutes, MINUTES_PER_DAY));
+    }
+
+    /**
+     * Create the population and append the calls to a buffer, without keeping
+     * the persons in memory.
+     * @param buffer The buffer, over the cells of {@link #getCells()}
+     * @param parallelism The number of threads generating the population
+     * @see #create(Consumer, int)
+     */
+    public void create(CallBuffer buffer, int parallelism) {
+        create(buffer::addAll, parallelism);
     }
 
     /**
@@ -328,6 +597,20 @@ public class Population {
     public List<Person> getPopulation() {
         return population;
     }
+
+    /**
+     * @return The distribution of the dates and times of the calls
+     */
+    public DateTimeDistribution getDateTimeDistribution() {
+        return dateTimeDist;
+    }
+
+    /**
+     * @return The cells where the calls are made
+     */
+    public CellStore getCells() {
+        return cellDist.getCells();
+    }
     
     
 }
@@ -0,0 +1,144 @@
+package com.cdr.gen;
+
+import com.cdr.gen.util.TokenBucket;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+
+/**
+ * Writes time-ordered calls as a live feed would, paced to wall-clock time:
+ * <ul>
+ * <li>at <code>replayRate</code> calls per second, with a {@link TokenBucket}
+ * that lets through batches of <code>replayBatch</code> calls (1000 by
+ * default) and catches up on pauses of up to a tenth of a second;</li>
+ * <li>or at <code>replaySpeed</code> times the pace of the start of the calls,
+ * so that with a speed of 60 an hour of calls is written in a minute.</li>
+ * </ul>
+ * If both are set, the calls follow their start times without going over the
+ * rate. The rows are flushed before each wait, so they are written in batches
+ * when they are due. The achieved rate is logged every
+ * <code>replayReportSeconds</code> seconds (10 by default) and when the sink is
+ * closed, leaving out the calls let through at once when the replay starts.
+ *
+ * Instances are not thread-safe.
+ */
+public class ReplaySink implements CallSink, Closeable {
+    private static final Logger LOG = Logger.getLogger(ReplaySink.class);
+    private static final int DEFAULT_BATCH = 1000;
+    private static final long DEFAULT_REPORT_SECONDS = 10;
+
+    private final CsvWriter writer;
+    private final double rate;
+    private final double speed;
+    private final int batch;
+    private final long reportNanos;
+    private TokenBucket bucket;
+    // the calls the bucket lets through at the start without waiting
+    private long burst;
+
+    private long startNanos = -1;
+    private long firstSecond;
+    private long lastSecond = -1;
+    private long count;
+    private long nextReport;
+    private long lastReport;
+    private long lastReportCount;
+
+    /**
+     * @param writer The writer of the calls, which is closed with the sink
+     * @param config The configuration
+     */
+    public ReplaySink(CsvWriter writer, Map<String, Object> config) {
+        this.writer = writer;
+        this.rate = ((Number) config.getOrDefault("replayRate", 0L)).doubleValue();
+        this.speed = ((Number) config.getOrDefault("replaySpeed", 0L)).doubleValue();
+        this.batch = Math.max(1, ((Number) config.getOrDefault("replayBatch", (long) DEFAULT_BATCH)).intValue());
+        this.reportNanos = ((Number) config.getOrDefault("replayReportSeconds", DEFAULT_REPORT_SECONDS)).longValue()
+                * 1000000000L;
+    }
+
+    @Override
+    public void write(long callingNumber, Call call) throws IOException {
+        if (startNanos < 0) {
+            startNanos = System.nanoTime();
+            firstSecond = call.getStartSecond();
+            lastReport = startNanos;
+            nextReport = startNanos + reportNanos;
+
+            if (rate > 0) {
+                // the bucket holds a tenth of a second of calls, to catch up after a pause
+                burst = Math.max(batch, (long) (rate / 10));
+                bucket = new TokenBucket(rate, burst);
+                lastReportCount = burst;
+            }
+        }
+
+        try {
+            if (bucket != null && count % batch == 0) {
+                writer.flush();
+                bucket.acquire(batch);
+            }
+
+            // calls start on whole seconds, so the schedule only moves when the second changes
+            if (speed > 0 && call.getStartSecond() != lastSecond) {
+                lastSecond = call.getStartSecond();
+                long due = startNanos + (long) ((lastSecond - firstSecond) * 1e9 / speed);
+
+                if (due > System.nanoTime()) {
+                    writer.flush();
+                    TokenBucket.sleepUntil(due);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while replaying the calls");
+        }
+
+        writer.write(callingNumber, call);
+        count++;
+
+        if (count % batch == 0 && System.nanoTime() >= nextReport) {
+            report();
+        }
+    }
+
+    private void report() {
+        long now = System.nanoTime();
+        double interval = (now - lastReport) / 1e9;
+
+        LOG.info(String.format("Replayed %d calls, %.0f calls/s%s", count,
+                (interval > 0) ? Math.max(0, count - lastReportCount) / interval : 0,
+                (rate > 0) ? String.format(" (target %.0f calls/s)", rate) : ""));
+
+        lastReport = now;
+        lastReportCount = count;
+        nextReport = now + reportNanos;
+    }
+
+    /**
+     * @return The number of calls written
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The average number of calls written per second since the first
+     *         one, without the calls let through at once at the start
+     */
+    public double getAchievedRate() {
+        double elapsed = (startNanos < 0) ? 0 : (System.nanoTime() - startNanos) / 1e9;
+        return (elapsed > 0) ? Math.max(0, count - burst) / elapsed : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+
+        LOG.info(String.format("Replay finished: %d calls, %.0f calls/s%s", count, getAchievedRate(),
+                (rate > 0) ? String.format(" (target %.0f calls/s)", rate) : ""));
+    }
+}
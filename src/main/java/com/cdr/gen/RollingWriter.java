@@ -0,0 +1,254 @@
+package com.cdr.gen;
+
+import org.apache.log4j.Logger;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes calls to a sequence of part files, <code>&lt;prefix&gt;-part-00000.csv</code>,
+ * <code>&lt;prefix&gt;-part-00001.csv</code> and so on, starting a new part when
+ * the current one reaches <code>partMaxBytes</code> bytes (256 MiB by default,
+ * counted before the compression) or <code>partMaxRecords</code> calls.
+ *
+ * The persons are written by <code>writerThreads</code> threads, each one
+ * filling its own part, so the calls of a person are never split between
+ * writers but the order of the persons is only kept with a single writer.
+ *
+ * When closed, a manifest, <code>&lt;prefix&gt;-manifest.json</code>, lists the
+ * parts with their number of calls and size.
+ */
+public class RollingWriter implements Closeable {
+    private static final Logger LOG = Logger.getLogger(RollingWriter.class);
+    private static final long DEFAULT_PART_MAX_BYTES = 256L << 20;
+    private static final int QUEUED_PERSONS_PER_WRITER = 64;
+    private static final Person END = new Person();
+
+    private final Path dir;
+    private final String prefix;
+    private final String suffix;
+    private final Map<String, Object> config;
+    private final FormatTables formats;
+    private final long maxBytes;
+    private final long maxRecords;
+    private final BlockingQueue<Person> queue;
+    private final List<Thread> writers = new ArrayList<>();
+    private final AtomicInteger nextPart = new AtomicInteger();
+    private final List<Part> parts = Collections.synchronizedList(new ArrayList<>());
+    private volatile Throwable error;
+    private boolean closed;
+
+    /**
+     * @param dir The directory of the files
+     * @param prefix The prefix of the names of the files
+     * @param config The configuration
+     */
+    public RollingWriter(Path dir, String prefix, Map<String, Object> config) {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.suffix = ".csv" + Compression.fromConfig(config).getSuffix();
+        this.config = config;
+        this.formats = new FormatTables(config);
+        this.maxBytes = ((Number) config.getOrDefault("partMaxBytes", DEFAULT_PART_MAX_BYTES)).longValue();
+        this.maxRecords = ((Number) config.getOrDefault("partMaxRecords", 0L)).longValue();
+
+        int threads = Math.max(1, ((Number) config.getOrDefault("writerThreads", 1L)).intValue());
+        this.queue = new ArrayBlockingQueue<>(threads * QUEUED_PERSONS_PER_WRITER);
+
+        for (int i = 0; i < threads; i++) {
+            Thread writer = new Thread(this::drain, prefix + "-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+    }
+
+    /**
+     * Queues all the calls of a person to be written.
+     * @param p The person
+     * @throws IOException If a part can't be written
+     */
+    public void write(Person p) throws IOException {
+        try {
+            while (!queue.offer(p, 100, TimeUnit.MILLISECONDS)) {
+                checkError();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing " + prefix);
+        }
+        checkError();
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            throw new IOException("Error while writing the parts of " + prefix, error);
+        }
+    }
+
+    private void drain() {
+        CsvWriter writer = null;
+        Path file = null;
+
+        try {
+            for (Person p = queue.take(); p != END; p = queue.take()) {
+                for (Call call : p.getCalls()) {
+                    if (writer != null && isFull(writer)) {
+                        finish(writer, file);
+                        writer = null;
+                    }
+
+                    if (writer == null) {
+                        file = dir.resolve(String.format("%s-part-%05d%s", prefix, nextPart.getAndIncrement(), suffix));
+                        writer = new CsvWriter(file, config, formats);
+                        writer.writeHeaders();
+                    }
+
+                    writer.write(p.getNumber(), call);
+                }
+            }
+
+            if (writer != null) {
+                finish(writer, file);
+            }
+        } catch (Throwable ex) {
+            error = ex;
+
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException closeEx) {
+                    ex.addSuppressed(closeEx);
+                }
+            }
+        }
+    }
+
+    private boolean isFull(CsvWriter writer) {
+        return (maxRecords > 0 && writer.getRecords() >= maxRecords)
+                || (maxBytes > 0 && writer.getSize() >= maxBytes);
+    }
+
+    private void finish(CsvWriter writer, Path file) throws IOException {
+        writer.close();
+        parts.add(new Part(file, writer.getRecords(), Files.size(file)));
+        LOG.info(String.format("Part written: %s (%d calls)", file, writer.getRecords()));
+    }
+
+    /**
+     * Waits for the writers to finish the queued persons and writes the manifest.
+     * @throws IOException If a part or the manifest can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            if (error != null) {
+                queue.clear();
+            }
+            for (int i = 0; i < writers.size(); i++) {
+                queue.put(END);
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing " + prefix);
+        }
+
+        checkError();
+        writeManifest();
+    }
+
+    private void writeManifest() throws IOException {
+        JSONArray list = new JSONArray();
+        long records = 0;
+
+        for (Part part : getParts()) {
+            JSONObject entry = new JSONObject();
+            entry.put("file", part.getFile().getFileName().toString());
+            entry.put("records", part.getRecords());
+            entry.put("bytes", part.getBytes());
+            list.add(entry);
+            records += part.getRecords();
+        }
+
+        JSONObject manifest = new JSONObject();
+        manifest.put("records", records);
+        manifest.put("parts", list);
+
+        Files.write(getManifest(), manifest.toJSONString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return The file of the manifest
+     */
+    public Path getManifest() {
+        return dir.resolve(prefix + "-manifest.json");
+    }
+
+    /**
+     * @return The parts written so far, in the order of their names
+     */
+    public List<Part> getParts() {
+        List<Part> sorted;
+        synchronized (parts) {
+            sorted = new ArrayList<>(parts);
+        }
+        sorted.sort(Comparator.comparing(Part::getFile));
+        return sorted;
+    }
+
+    /**
+     * A part written by the writer.
+     */
+    public static final class Part {
+        private final Path file;
+        private final long records;
+        private final long bytes;
+
+        Part(Path file, long records, long bytes) {
+            this.file = file;
+            this.records = records;
+            this.bytes = bytes;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * @return The number of calls in the part
+         */
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * @return The size of the file, in bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.cdr.gen;
+
+import java.math.BigInteger;
+
+/**
+ * Writes a double as ASCII with the fewest digits that read back as the same
+ * double, in the format of {@link Double#toString(double)} since Java 19, into
+ * an array and without creating any object.
+ *
+ * The digits are found with the Schubfach algorithm of Raffaello Giulietti,
+ * "The Schubfach way to render doubles" (2020), as done by the JDK: the
+ * rounding interval of the double is scaled by a 126-bit approximation of a
+ * power of ten, and the shortest decimal in it, or else the closest one with
+ * 17 digits, is picked. The powers of ten are computed once when the class is
+ * loaded.
+ *
+ * Older JDKs sometimes print one or two more digits than needed, where the
+ * output of this class is shorter but reads back as the same double.
+ */
+final class ShortestDecimal {
+    private static final int P = 53;
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << (P - 1);
+    private static final int BQ_MASK = 0x7ff;
+    private static final long T_MASK = C_MIN - 1;
+    // subnormals with fewer significant bits are scaled by ten to keep enough digits
+    private static final long C_TINY = 3;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    private static final long MASK_63 = 0x7fffffffffffffffL;
+
+    private static final byte[] NAN = {'N', 'a', 'N'};
+    private static final byte[] INFINITY = {'I', 'n', 'f', 'i', 'n', 'i', 't', 'y'};
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    // the upper and lower 63 bits of floor(10^-k 2^r) + 1, with r such that it has 126 bits
+    private static final long[] G1 = new long[K_MAX - K_MIN + 1];
+    private static final long[] G0 = new long[K_MAX - K_MIN + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            BigInteger g;
+
+            if (k <= 0) {
+                BigInteger power = BigInteger.TEN.pow(-k);
+                int shift = 126 - power.bitLength();
+                g = (shift >= 0) ? power.shiftLeft(shift) : power.shiftRight(-shift);
+            } else {
+                BigInteger power = BigInteger.TEN.pow(k);
+                g = BigInteger.ONE.shiftLeft(125 + power.bitLength()).divide(power);
+            }
+
+            g = g.add(BigInteger.ONE);
+            G1[k - K_MIN] = g.shiftRight(63).longValue();
+            G0[k - K_MIN] = g.longValue() & MASK_63;
+        }
+    }
+
+    private ShortestDecimal() {
+    }
+
+    /**
+     * Writes a double as {@link Double#toString(double)} does since Java 19.
+     * @param value The number
+     * @param dest The destination array, with room for at least 24 bytes
+     * @param pos The position in the destination array
+     * @return The position after the number
+     */
+    static int write(double value, byte[] dest, int pos) {
+        long bits = Double.doubleToRawLongBits(value);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+
+        if (bq == BQ_MASK) {
+            if (t != 0) {
+                return put(NAN, dest, pos);
+            }
+            if (bits < 0) {
+                dest[pos++] = '-';
+            }
+            return put(INFINITY, dest, pos);
+        }
+
+        if (bits < 0) {
+            dest[pos++] = '-';
+        }
+
+        if (bq != 0) {
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+
+            // whole numbers are written as they are
+            if (0 < mq && mq < P) {
+                long f = c >> mq;
+                if (f << mq == c) {
+                    return write(f, 0, dest, pos);
+                }
+            }
+            return write(-mq, c, 0, dest, pos);
+        }
+
+        if (t != 0) {
+            return (t < C_TINY) ? write(Q_MIN, 10 * t, -1, dest, pos) : write(Q_MIN, t, 0, dest, pos);
+        }
+
+        // zero
+        dest[pos++] = '0';
+        dest[pos++] = '.';
+        dest[pos++] = '0';
+        return pos;
+    }
+
+    /**
+     * Finds and writes the shortest decimal of <code>c 2^q</code>.
+     * @param dk The power of ten the decimal must be multiplied by
+     */
+    private static int write(int q, long c, int dk, byte[] dest, int pos) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+
+        // the interval is narrower below a power of two
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = floorLog10Pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = floorLog10ThreeQuartersPow2(q);
+        }
+
+        int h = q + floorLog2Pow10(-k) + 2;
+        long g1 = G1[k - K_MIN];
+        long g0 = G0[k - K_MIN];
+
+        long vb = roundOdd(g1, g0, cb << h);
+        long vbl = roundOdd(g1, g0, cbl << h);
+        long vbr = roundOdd(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // one digit less, if only one of its neighbours is in the interval
+            long sp10 = 10 * multiplyHigh(s, 115292150460684698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+
+            if (upin != wpin) {
+                return write(upin ? sp10 : tp10, k, dest, pos);
+            }
+        }
+
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+
+        if (uin != win) {
+            return write(uin ? s : t, k + dk, dest, pos);
+        }
+
+        // both are in the interval, so the closest one is taken, or the even one on a tie
+        long cmp = vb - ((s + t) << 1);
+        return write((cmp < 0 || (cmp == 0 && (s & 0x1) == 0)) ? s : t, k + dk, dest, pos);
+    }
+
+    /**
+     * Writes <code>f 10^e</code>, plain from 0.001 to 10^7 and as
+     * <code>d.dddEn</code> otherwise, always with a digit after the point.
+     */
+    private static int write(long f, int e, byte[] dest, int pos) {
+        while (f % 10 == 0 && f != 0) {
+            f /= 10;
+            e++;
+        }
+
+        int length = 1;
+        while (length < POWERS_OF_TEN.length && f >= POWERS_OF_TEN[length]) {
+            length++;
+        }
+
+        // the exponent of the first digit, plus one
+        int exponent = length + e;
+
+        if (0 < exponent && exponent <= 7) {
+            if (length <= exponent) {
+                pos = FormatTables.writeDigits(f, length, dest, pos);
+                pos = FormatTables.writeDigits(0, exponent - length, dest, pos);
+                dest[pos++] = '.';
+                dest[pos++] = '0';
+            } else {
+                long scale = POWERS_OF_TEN[length - exponent];
+                pos = FormatTables.writeDigits(f / scale, exponent, dest, pos);
+                dest[pos++] = '.';
+                pos = FormatTables.writeDigits(f % scale, length - exponent, dest, pos);
+            }
+            return pos;
+        }
+
+        if (-3 < exponent && exponent <= 0) {
+            dest[pos++] = '0';
+            dest[pos++] = '.';
+            pos = FormatTables.writeDigits(0, -exponent, dest, pos);
+            return FormatTables.writeDigits(f, length, dest, pos);
+        }
+
+        long scale = POWERS_OF_TEN[length - 1];
+        pos = FormatTables.writeDigits(f / scale, 1, dest, pos);
+        dest[pos++] = '.';
+        pos = (length > 1) ? FormatTables.writeDigits(f % scale, length - 1, dest, pos)
+                : FormatTables.writeDigits(0, 1, dest, pos);
+        dest[pos++] = 'E';
+        return FormatTables.writeLong(exponent - 1, dest, pos);
+    }
+
+    /**
+     * @return The product of the 126-bit g and cp, divided by 2^128, rounded to odd
+     */
+    private static long roundOdd(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+    }
+
+    /**
+     * @return The upper 64 bits of the 128-bit product, as Math.multiplyHigh
+     *         does since Java 9
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xffffffffL;
+        long y1 = y >> 32;
+        long y2 = y & 0xffffffffL;
+
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = (t & 0xffffffffL) + x2 * y1;
+        long z0 = t >> 32;
+
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    // floor(e log10(2)), floor(e log10(3/4 2)) and floor(e log2(10)), for the
+    // exponents of doubles
+    private static int floorLog10Pow2(int e) {
+        return (int) (e * 661971961083L >> 41);
+    }
+
+    private static int floorLog10ThreeQuartersPow2(int e) {
+        return (int) (e * 661971961083L + -274743187321L >> 41);
+    }
+
+    private static int floorLog2Pow10(int e) {
+        return (int) (e * 913124641741L >> 38);
+    }
+
+    private static int put(byte[] src, byte[] dest, int pos) {
+        System.arraycopy(src, 0, dest, pos, src.length);
+        return pos + src.length;
+    }
+}
@@ -0,0 +1,131 @@
+package com.cdr.gen;
+
+import com.cdr.gen.util.FeistelPermutation;
+
+import java.util.Arrays;
+
+/**
+ * Gives each account a distinct phone number, that depends only on the index
+ * of the account and on a key.
+ *
+ * The numbers of the codes of a type of call are seen as a single sequence of
+ * ranges, merged where a code is the prefix of another. The index of the account
+ * is shuffled by a keyed {@link FeistelPermutation} over the whole sequence and
+ * the result is mapped back to its range, so any set of distinct indexes gets
+ * distinct numbers. Processes given disjoint ranges of indexes and the same key
+ * never generate the same number.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public class SubscriberNumbering {
+    private final long[] rangeStarts;
+    private final long[] offsets;
+    private final FeistelPermutation permutation;
+
+    /**
+     * @param phoneCodes The phone codes
+     * @param type The index of the type of call whose codes are used
+     * @param key The key of the permutation
+     */
+    public SubscriberNumbering(PhoneCodeTable phoneCodes, int type, long key) {
+        int count = phoneCodes.size(type);
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+
+        // the numbers of a code, as a range of 11 digit numbers
+        for (int i = 0; i < count; i++) {
+            long subscribers = pow10(PhoneNumberGenerator.NUMBER_LENGTH - phoneCodes.getCodeLength(type, i));
+            starts[i] = phoneCodes.getCode(type, i) * subscribers;
+            ends[i] = starts[i] + subscribers;
+        }
+
+        long[][] merged = merge(starts, ends);
+        rangeStarts = merged[0];
+        offsets = merged[1];
+        permutation = new FeistelPermutation(offsets[offsets.length - 1], key);
+    }
+
+    /**
+     * @return The number of distinct phone numbers
+     */
+    public long size() {
+        return permutation.size();
+    }
+
+    /**
+     * @param account The index of the account, less than {@link #size()}
+     * @return The phone number of the account, as a number
+     */
+    public long getNumber(long account) {
+        if (account < 0 || account >= size()) {
+            throw new RuntimeException("No phone number left for account " + account
+                    + ", there are only " + size() + " numbers");
+        }
+
+        long position = permutation.permute(account);
+
+        // the last range that starts at or before the position
+        int low = 0;
+        int high = rangeStarts.length - 1;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (offsets[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return rangeStarts[low] + (position - offsets[low]);
+    }
+
+    /**
+     * Merges the overlapping ranges.
+     * @return The start of each merged range, and the position of its first
+     *         number in the sequence of all the ranges, with the total at the end
+     */
+    private static long[][] merge(long[] starts, long[] ends) {
+        Integer[] order = new Integer[starts.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+
+        long[] rangeStarts = new long[starts.length];
+        long[] offsets = new long[starts.length + 1];
+        int count = 0;
+        long end = -1;
+
+        for (int i : order) {
+            if (starts[i] < end) {
+                // overlaps the previous range
+                if (ends[i] > end) {
+                    offsets[count] += ends[i] - end;
+                    end = ends[i];
+                }
+                continue;
+            }
+
+            rangeStarts[count] = starts[i];
+            offsets[count + 1] = offsets[count] + ends[i] - starts[i];
+            count++;
+            end = ends[i];
+        }
+
+        if (count == 0) {
+            throw new RuntimeException("No phone codes to number the accounts");
+        }
+
+        return new long[][] {Arrays.copyOf(rangeStarts, count), Arrays.copyOf(offsets, count + 1)};
+    }
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,98 @@
+package com.cdr.gen.util;
+
+/**
+ * Samples indexes from a discrete distribution in constant time, using Vose's
+ * alias method. The weights don't need to sum to one, they are normalized.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public final class AliasSampler {
+    private final double[] prob;
+    private final int[] alias;
+
+    /**
+     * @param weights The weight of each index, must be non-negative and with
+     *                at least one positive weight
+     */
+    public AliasSampler(double[] weights) {
+        int n = weights.length;
+        double sum = 0;
+
+        for (double w : weights) {
+            if (!(w >= 0) || Double.isInfinite(w)) {
+                throw new IllegalArgumentException("Invalid weight: " + w);
+            }
+            sum += w;
+        }
+
+        if (n == 0 || sum <= 0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+
+        prob = new double[n];
+        alias = new int[n];
+
+        // scale the weights so that their average is one
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int numSmall = 0, numLarge = 0;
+
+        for (int i=0; i<n; i++) {
+            scaled[i] = weights[i] * n / sum;
+
+            if (scaled[i] < 1) {
+                small[numSmall++] = i;
+            } else {
+                large[numLarge++] = i;
+            }
+        }
+
+        while (numSmall > 0 && numLarge > 0) {
+            int less = small[--numSmall];
+            int more = large[--numLarge];
+
+            prob[less] = scaled[less];
+            alias[less] = more;
+
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+
+            if (scaled[more] < 1) {
+                small[numSmall++] = more;
+            } else {
+                large[numLarge++] = more;
+            }
+        }
+
+        // what is left only differs from one by rounding errors
+        while (numLarge > 0) {
+            int i = large[--numLarge];
+            prob[i] = 1;
+            alias[i] = i;
+        }
+
+        while (numSmall > 0) {
+            int i = small[--numSmall];
+            prob[i] = 1;
+            alias[i] = i;
+        }
+    }
+
+    /**
+     * @param rng The random number generator
+     * @return A random index, with probability proportional to its weight
+     */
+    public int next(Rng rng) {
+        double u = rng.nextDouble() * prob.length;
+        int i = (int) u;
+
+        return (u - i < prob[i]) ? i : alias[i];
+    }
+
+    /**
+     * @return The number of indexes
+     */
+    public int size() {
+        return prob.length;
+    }
+}
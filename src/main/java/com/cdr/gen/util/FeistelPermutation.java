@@ -0,0 +1,76 @@
+package com.cdr.gen.util;
+
+/**
+ * Keyed bijective permutation of the integers in <code>[0, size)</code>, made
+ * with a balanced Feistel network over the smallest even number of bits that
+ * covers the range. Values that fall outside the range are encrypted again
+ * (cycle walking) until they fall inside it, which takes less than four rounds
+ * on average since the network covers less than four times the range.
+ *
+ * The permutation only depends on the size and on the key, so it gives the
+ * same result in every thread and process. Instances are immutable.
+ */
+public final class FeistelPermutation {
+    private static final int ROUNDS = 4;
+
+    private final long size;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    /**
+     * @param size The number of integers to permute, must be positive
+     * @param key The key of the permutation
+     */
+    public FeistelPermutation(long size, long key) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+
+        int bits = 64 - Long.numberOfLeadingZeros(size - 1);
+        this.size = size;
+        this.halfBits = Math.max(1, (bits + 1) / 2);
+        this.halfMask = (1L << halfBits) - 1;
+
+        Rng rng = new Rng(key);
+        for (int i = 0; i < ROUNDS; i++) {
+            roundKeys[i] = rng.nextLong();
+        }
+    }
+
+    /**
+     * @param value An integer in <code>[0, size)</code>
+     * @return The integer the value is mapped to, also in <code>[0, size)</code>
+     */
+    public long permute(long value) {
+        if (value < 0 || value >= size) {
+            throw new IllegalArgumentException("Value out of range: " + value);
+        }
+
+        do {
+            value = encrypt(value);
+        } while (value >= size);
+
+        return value;
+    }
+
+    /**
+     * @return The number of integers in the permutation
+     */
+    public long size() {
+        return size;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+
+        for (long roundKey : roundKeys) {
+            long next = left ^ (Rng.mix64(right ^ roundKey) & halfMask);
+            left = right;
+            right = next;
+        }
+
+        return (left << halfBits) | right;
+    }
+}
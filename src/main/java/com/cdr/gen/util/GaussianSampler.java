@@ -0,0 +1,142 @@
+package com.cdr.gen.util;
+
+/**
+ * Samples numbers from a gaussian distribution, optionally truncated by a lower
+ * bound. Truncated samples are drawn directly, by inverting the cumulative
+ * distribution function, so there is no rejection loop no matter how much of
+ * the distribution lies below the bound.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public final class GaussianSampler {
+    private static final double SQRT_HALF = Math.sqrt(0.5);
+
+    private final double stdDev;
+    private final double mean;
+    private final double min;
+    private final double tailMass;
+
+    /**
+     * @param stdDev The standard deviation
+     * @param mean The average
+     */
+    public GaussianSampler(double stdDev, double mean) {
+        this(stdDev, mean, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * @param stdDev The standard deviation
+     * @param mean The average
+     * @param min The lower bound (inclusive) of the generated numbers
+     */
+    public GaussianSampler(double stdDev, double mean, double min) {
+        this.stdDev = stdDev;
+        this.mean = mean;
+        this.min = min;
+        this.tailMass = (stdDev > 0 && min != Double.NEGATIVE_INFINITY)
+                ? normalCdf((mean - min) / stdDev) : 1.0;
+    }
+
+    /**
+     * @param rng The random number generator
+     * @return A random number
+     */
+    public double next(Rng rng) {
+        if (min == Double.NEGATIVE_INFINITY) {
+            return next(stdDev, mean, rng);
+        }
+
+        if (stdDev <= 0 || tailMass == 0) {
+            return Math.max(mean, min);
+        }
+
+        // pick a point of the upper tail, above the bound, strictly between 0 and tailMass
+        double u = tailMass * (((rng.nextLong() >>> 11) + 0.5) * 0x1.0p-53);
+        double value = mean - stdDev * inverseNormalCdf(u);
+
+        return Math.max(value, min);
+    }
+
+    /**
+     * @param stdDev The standard deviation
+     * @param mean The average
+     * @param rng The random number generator
+     * @return A random number from the (not truncated) distribution
+     */
+    public static double next(double stdDev, double mean, Rng rng) {
+        return rng.nextGaussian() * stdDev + mean;
+    }
+
+    /**
+     * @param x The value
+     * @return The cumulative distribution function of the standard normal distribution
+     */
+    static double normalCdf(double x) {
+        return 0.5 * erfc(-x * SQRT_HALF);
+    }
+
+    /**
+     * Complementary error function with fractional error below 1.2e-7,
+     * from Numerical Recipes.
+     */
+    private static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1.0 / (1.0 + 0.5 * z);
+        double ans = t * StrictMath.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196
+                + t * (0.09678418 + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398
+                + t * (1.48851587 + t * (-0.82215223 + t * 0.17087277)))))))));
+        return (x >= 0) ? ans : 2.0 - ans;
+    }
+
+    /**
+     * Inverse of the cumulative distribution function of the standard normal
+     * distribution, with relative error below 1.15e-9, by Peter J. Acklam.
+     * @param p The probability, strictly between 0 and 1
+     * @return The value
+     */
+    static double inverseNormalCdf(double p) {
+        final double pLow = 0.02425;
+
+        if (p < pLow) {
+            double q = StrictMath.sqrt(-2 * StrictMath.log(p));
+            return (((((C1 * q + C2) * q + C3) * q + C4) * q + C5) * q + C6)
+                    / ((((D1 * q + D2) * q + D3) * q + D4) * q + 1);
+        }
+
+        if (p > 1 - pLow) {
+            double q = StrictMath.sqrt(-2 * StrictMath.log(1 - p));
+            return -(((((C1 * q + C2) * q + C3) * q + C4) * q + C5) * q + C6)
+                    / ((((D1 * q + D2) * q + D3) * q + D4) * q + 1);
+        }
+
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((A1 * r + A2) * r + A3) * r + A4) * r + A5) * r + A6) * q
+                / (((((B1 * r + B2) * r + B3) * r + B4) * r + B5) * r + 1);
+    }
+
+    private static final double A1 = -3.969683028665376e+01;
+    private static final double A2 = 2.209460984245205e+02;
+    private static final double A3 = -2.759285104469687e+02;
+    private static final double A4 = 1.383577518672690e+02;
+    private static final double A5 = -3.066479806614716e+01;
+    private static final double A6 = 2.506628277459239e+00;
+
+    private static final double B1 = -5.447609879822406e+01;
+    private static final double B2 = 1.615858368580409e+02;
+    private static final double B3 = -1.556989798598866e+02;
+    private static final double B4 = 6.680131188771972e+01;
+    private static final double B5 = -1.328068155288572e+01;
+
+    private static final double C1 = -7.784894002430293e-03;
+    private static final double C2 = -3.223964580411365e-01;
+    private static final double C3 = -2.400758277161838e+00;
+    private static final double C4 = -2.549671180376945e+00;
+    private static final double C5 = 4.374664141464130e+00;
+    private static final double C6 = 2.938163982698783e+00;
+
+    private static final double D1 = 7.784695709041462e-03;
+    private static final double D2 = 3.224671290700398e-01;
+    private static final double D3 = 2.445134137440100e+00;
+    private static final double D4 = 3.754408661907416e+00;
+}
@@ -1,9 +1,8 @@
 package com.cdr.gen.util;
 
-import java.util.Random;
+import java.util.UUID;
 
 public class RandomUtil {
-    private static Random rand = new Random();
     /**
      * Returns a pseudo-random number between min and max, inclusive.
      * The difference between min and max can be at most
@@ -11,28 +10,33 @@ public class RandomUtil {
      *
      * @param min Minimum value
      * @param max Maximum value.  Must be greater than min.
+     * @param rng The random number generator
      * @return Integer between min and max, inclusive.
-     * @see java.util.Random#nextInt(int)
+     * @see Rng#nextInt(int)
      */
-    public static int randInt(int min, int max) {
-
-        // Usually this can be a field rather than a method variable
-        //Random rand = new Random();
-        rand.setSeed(System.currentTimeMillis());
-
+    public static int randInt(int min, int max, Rng rng) {
         // nextInt is normally exclusive of the top value,
         // so add 1 to make it inclusive
-        int randomNum = rand.nextInt((max - min) + 1) + min;
+        int randomNum = rng.nextInt((max - min) + 1) + min;
 
         return randomNum;
     }
-    
-    public static double randDouble(double min, double max) {
-        //Random rand = new Random();
-        rand.setSeed(System.currentTimeMillis());
-        
-        double randomNum = min + (rand.nextDouble() * ((max - min) + 1));
+
+    public static double randDouble(double min, double max, Rng rng) {
+        double randomNum = min + (rng.nextDouble() * ((max - min) + 1));
 
         return randomNum;
     }
+
+    /**
+     * Returns a random (version 4) UUID, generated from the given generator
+     * instead of a {@link java.security.SecureRandom}.
+     * @param rng The random number generator
+     * @return The UUID
+     */
+    public static UUID randomUUID(Rng rng) {
+        long msb = (rng.nextLong() & 0xffffffffffff0fffL) | 0x0000000000004000L;
+        long lsb = (rng.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
 }
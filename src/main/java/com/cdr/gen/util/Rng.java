@@ -0,0 +1,171 @@
+package com.cdr.gen.util;
+
+/**
+ * A fast, seedable and splittable pseudo-random number generator, based on
+ * the SplitMix64 algorithm. Instances are not thread-safe: each thread, or
+ * each partition of the population, must use its own instance, obtained with
+ * {@link #split()} or {@link #forStream(long, long)}.
+ *
+ * The same seed always produces the same sequence of numbers.
+ */
+public final class Rng {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    // ziggurat tables, see Marsaglia and Tsang, "The Ziggurat Method for Generating Random Variables"
+    private static final double ZIGGURAT_R = 3.442619855899;
+    private static final long[] KN = new long[128];
+    private static final double[] WN = new double[128];
+    private static final double[] FN = new double[128];
+
+    static {
+        final double m1 = 2147483648.0;
+        final double vn = 9.91256303526217e-3;
+        double dn = ZIGGURAT_R;
+        double tn = dn;
+        double q = vn / StrictMath.exp(-0.5 * dn * dn);
+
+        KN[0] = (long) ((dn / q) * m1);
+        KN[1] = 0;
+        WN[0] = q / m1;
+        WN[127] = dn / m1;
+        FN[0] = 1.0;
+        FN[127] = StrictMath.exp(-0.5 * dn * dn);
+
+        for (int i = 126; i >= 1; i--) {
+            dn = StrictMath.sqrt(-2.0 * StrictMath.log(vn / dn + StrictMath.exp(-0.5 * dn * dn)));
+            KN[i + 1] = (long) ((dn / tn) * m1);
+            tn = dn;
+            FN[i] = StrictMath.exp(-0.5 * dn * dn);
+            WN[i] = dn / m1;
+        }
+    }
+
+    private long seed;
+
+    public Rng(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a generator for an independent stream of numbers, identified by
+     * its index. The same seed and index always produce the same stream,
+     * regardless of the order in which the streams are created.
+     * @param seed The global seed
+     * @param index The index of the stream
+     * @return The generator for the stream
+     */
+    public static Rng forStream(long seed, long index) {
+        return new Rng(mix64(seed ^ mix64((index + 1) * GOLDEN_GAMMA)));
+    }
+
+    /**
+     * @return A new generator, independent from this one
+     */
+    public Rng split() {
+        return new Rng(mix64(nextLong()) ^ GOLDEN_GAMMA);
+    }
+
+    public long nextLong() {
+        return mix64(seed += GOLDEN_GAMMA);
+    }
+
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * @param bound The upper bound (exclusive), must be positive
+     * @return A uniformly distributed number between 0 (inclusive) and bound (exclusive)
+     */
+    public int nextInt(int bound) {
+        int r = nextInt();
+        int m = bound - 1;
+
+        if ((bound & m) == 0) {
+            return r & m;
+        }
+
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1);
+        return r;
+    }
+
+    /**
+     * @param bound The upper bound (exclusive), must be positive
+     * @return A uniformly distributed number between 0 (inclusive) and bound (exclusive)
+     */
+    public long nextLong(long bound) {
+        long r = nextLong();
+        long m = bound - 1;
+
+        if ((bound & m) == 0L) {
+            return r & m;
+        }
+
+        for (long u = r >>> 1; u + m - (r = u % bound) < 0L; u = nextLong() >>> 1);
+        return r;
+    }
+
+    /**
+     * @return A uniformly distributed number between 0 (inclusive) and 1 (exclusive)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /**
+     * Generates a normally distributed number using the ziggurat method, which
+     * in most cases takes a single random number, a table lookup and a multiplication.
+     * @return A normally distributed number with mean 0 and standard deviation 1
+     */
+    public double nextGaussian() {
+        long bits = nextLong();
+        int hz = (int) (bits >>> 32);
+        int iz = (int) bits & 127;
+
+        if (Math.abs((long) hz) < KN[iz]) {
+            return hz * WN[iz];
+        }
+
+        return nextGaussianTail(hz, iz);
+    }
+
+    private double nextGaussianTail(int hz, int iz) {
+        for (;;) {
+            double x = hz * WN[iz];
+
+            // base strip, sample from the tail
+            if (iz == 0) {
+                double y;
+                do {
+                    x = -StrictMath.log(1 - nextDouble()) / ZIGGURAT_R;
+                    y = -StrictMath.log(1 - nextDouble());
+                } while (y + y < x * x);
+                return (hz > 0) ? ZIGGURAT_R + x : -ZIGGURAT_R - x;
+            }
+
+            // wedge
+            if (FN[iz] + nextDouble() * (FN[iz - 1] - FN[iz]) < StrictMath.exp(-0.5 * x * x)) {
+                return x;
+            }
+
+            long bits = nextLong();
+            hz = (int) (bits >>> 32);
+            iz = (int) bits & 127;
+
+            if (Math.abs((long) hz) < KN[iz]) {
+                return hz * WN[iz];
+            }
+        }
+    }
+
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,64 @@
+package com.cdr.gen.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token bucket that paces events to a steady rate, allowing bursts of up to a
+ * given number of tokens. It keeps the theoretical arrival time of the next
+ * token, so the long-term rate is exact whatever the size of each request.
+ *
+ * Waits park the thread until shortly before the deadline and then spin, which
+ * keeps the jitter in the order of microseconds. Instances are not thread-safe.
+ */
+public final class TokenBucket {
+    private static final long SPIN_NANOS = 50000L;
+
+    private final double nanosPerToken;
+    private final long burstNanos;
+    private long nextFree;
+
+    /**
+     * @param rate The number of tokens per second
+     * @param burst The number of tokens that can be taken at once without waiting
+     */
+    public TokenBucket(double rate, long burst) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Invalid rate: " + rate);
+        }
+
+        this.nanosPerToken = 1e9 / rate;
+        this.burstNanos = Math.round(burst * nanosPerToken);
+        this.nextFree = System.nanoTime();
+    }
+
+    /**
+     * Takes tokens, waiting until they are available.
+     * @param tokens The number of tokens
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public void acquire(long tokens) throws InterruptedException {
+        nextFree = Math.max(nextFree, System.nanoTime()) + Math.round(tokens * nanosPerToken);
+        sleepUntil(nextFree - burstNanos);
+    }
+
+    /**
+     * Waits until an instant of {@link System#nanoTime()}.
+     * @param deadline The instant
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.cdr.gen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class BucketedWriterTest extends TestCase {
+    private OutputFixture fixture;
+
+    public BucketedWriterTest(String testName) {
+        super(testName);
+
+        fixture = new OutputFixture("uuid", "calling_number", "start_epoch", "called_number");
+        fixture.getConfig().put("buckets", 4L);
+    }
+
+    private List<String> readBuckets(List<Path> files) throws IOException {
+        List<String> rows = new ArrayList<>();
+
+        for (int i = 0; i < files.size(); i++) {
+            for (String row : Files.readAllLines(files.get(i), StandardCharsets.UTF_8)) {
+                // as Hive buckets a string column
+                String number = row.split(",")[1];
+                assertEquals(i, (number.hashCode() & Integer.MAX_VALUE) % files.size());
+                rows.add(row);
+            }
+        }
+
+        return rows;
+    }
+
+    public void testBuckets() throws IOException {
+        List<String> expected = fixture.getRows();
+
+        Path dir = Files.createTempDirectory("cdr");
+        List<Path> files = fixture.getGenerator().saveToBuckets(dir.resolve("cdr").toString(),
+                fixture.newPopulation(), 2);
+        assertEquals(4, files.size());
+
+        List<String> rows = readBuckets(files);
+        Collections.sort(expected);
+        Collections.sort(rows);
+        assertEquals(expected, rows);
+
+        OutputFixture.delete(dir);
+    }
+
+    public void testSortedBuckets() throws IOException {
+        fixture.getConfig().put("bucketSort", true);
+        List<String> expected = fixture.getRows();
+
+        Path dir = Files.createTempDirectory("cdr");
+        List<Path> files = fixture.getGenerator().saveToBuckets(dir.resolve("cdr").toString(),
+                fixture.newPopulation(), 2);
+
+        for (Path file : files) {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            for (int i = 1; i < lines.size(); i++) {
+                String[] previous = lines.get(i - 1).split(",");
+                String[] current = lines.get(i).split(",");
+                long order = Long.compare(Long.parseLong(previous[1]), Long.parseLong(current[1]));
+                if (order == 0) {
+                    order = Long.compare(Long.parseLong(previous[2]), Long.parseLong(current[2]));
+                }
+                assertTrue(order <= 0);
+            }
+        }
+
+        List<String> rows = readBuckets(files);
+        Collections.sort(expected);
+        Collections.sort(rows);
+        assertEquals(expected, rows);
+
+        OutputFixture.delete(dir);
+    }
+}
@@ -0,0 +1,70 @@
+package com.cdr.gen;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class CallBufferTest extends TestCase {
+    private CDRGen generator;
+
+    public CallBufferTest(String testName) {
+        super(testName);
+
+        generator = new CDRGen();
+    }
+
+    private void assertSameCalls(List<Person> persons, CallBuffer buffer) {
+        Call read = new Call();
+        long i = 0;
+
+        for (Person p : persons) {
+            for (Call c : p.getCalls()) {
+                assertEquals(p.getNumber(), buffer.getCallingNumber(i));
+                buffer.read(i++, read);
+
+                assertEquals(c.getId(), read.getId());
+                assertEquals(c.getTime(), read.getTime());
+                assertEquals(c.getType(), read.getType());
+                assertEquals(c.getDestNumber(), read.getDestNumber());
+                assertEquals(c.getCellIndex(), read.getCellIndex());
+                assertEquals(c.getLine(), read.getLine());
+                assertEquals(c.getCost(), read.getCost());
+                assertEquals(c.getFraud(), read.getFraud());
+            }
+        }
+
+        assertEquals(i, buffer.size());
+    }
+
+    public void testDirect() {
+        generator.getConfig().put("seed", 42L);
+        List<Person> persons = new ArrayList<>();
+        new Population(generator.getConfig()).create(persons::add);
+
+        Population population = new Population(generator.getConfig());
+        try (CallBuffer buffer = new CallBuffer(population.getCells(), null, 1000)) {
+            population.create(buffer, 2);
+            assertSameCalls(persons, buffer);
+        }
+    }
+
+    public void testSpill() throws IOException {
+        generator.getConfig().put("seed", 42L);
+        List<Person> persons = new ArrayList<>();
+        new Population(generator.getConfig()).create(persons::add);
+
+        Path dir = Files.createTempDirectory("calls");
+        Population population = new Population(generator.getConfig());
+
+        try (CallBuffer buffer = new CallBuffer(population.getCells(), dir, 1000)) {
+            population.create(buffer, 1);
+            assertSameCalls(persons, buffer);
+        }
+
+        assertEquals(0, dir.toFile().list().length);
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,65 @@
+package com.cdr.gen;
+
+import junit.framework.TestCase;
+
+public class CallScheduleTest extends TestCase {
+
+    public CallScheduleTest(String testName) {
+        super(testName);
+    }
+
+    public void testAdd() {
+        CallSchedule schedule = new CallSchedule(-10, 1000);
+
+        assertTrue(schedule.add(100, 10));
+        assertTrue(schedule.add(0, 5));
+        assertTrue(schedule.add(110, 0));
+
+        assertFalse(schedule.add(105, 1));
+        assertFalse(schedule.add(95, 6));
+        assertFalse(schedule.add(110, 3));
+        assertTrue(schedule.add(95, 5));
+        assertTrue(schedule.add(111, 3));
+
+        assertEquals(5, schedule.size());
+        assertFalse(schedule.overlaps(5, 90));
+        assertTrue(schedule.overlaps(4, 90));
+
+        // across several words, and outside the range
+        assertTrue(schedule.add(200, 300));
+        assertTrue(schedule.overlaps(499, 1));
+        assertFalse(schedule.overlaps(500, 1));
+        assertTrue(schedule.add(-50, 30));
+        assertTrue(schedule.add(-50, 30));
+        assertTrue(schedule.add(990, 100));
+        assertTrue(schedule.overlaps(995, 1));
+        assertFalse(schedule.overlaps(1000, 1));
+
+        schedule.clear();
+        assertEquals(0, schedule.size());
+        assertFalse(schedule.overlaps(-10, 1010));
+    }
+
+    public void testFindNearest() {
+        CallSchedule schedule = new CallSchedule(0, 100);
+        schedule.add(0, 10);
+        schedule.add(22, 8);
+        schedule.add(40, 55);
+
+        // free minutes: 10 to 21, 30 to 39 and 95 onwards, past the end of the range
+        assertEquals(15, schedule.findNearest(15, 0, 100, 5));
+        assertEquals(17, schedule.findNearest(20, 0, 100, 5));
+        assertEquals(30, schedule.findNearest(26, 0, 100, 5));
+        assertEquals(11, schedule.findNearest(26, 0, 100, 11));
+        assertEquals(35, schedule.findNearest(60, 0, 100, 5));
+        assertEquals(95, schedule.findNearest(80, 0, 100, 5));
+        assertEquals(10, schedule.findNearest(0, 0, 100, 12));
+        assertEquals(-5, schedule.findNearest(1, -20, 100, 5));
+
+        // bounded by the range of starts
+        assertEquals(30, schedule.findNearest(15, 25, 100, 5));
+        assertEquals(16, schedule.findNearest(60, 0, 17, 5));
+        assertEquals(CallSchedule.NONE, schedule.findNearest(50, 0, 95, 13));
+        assertEquals(CallSchedule.NONE, schedule.findNearest(50, 50, 60, 1));
+    }
+}
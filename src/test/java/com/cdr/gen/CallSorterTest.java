@@ -0,0 +1,46 @@
+package com.cdr.gen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class CallSorterTest extends TestCase {
+    private OutputFixture fixture;
+
+    public CallSorterTest(String testName) {
+        super(testName);
+
+        fixture = new OutputFixture("uuid", "calling_number", "start_epoch", "called_number");
+    }
+
+    private List<String> getRows(String mode) throws IOException {
+        return fixture.getRows(mode, 2);
+    }
+
+    private void assertSorted(List<String> expected, List<String> rows) {
+        // the calls with the same start keep the order they were generated in
+        List<String> sorted = new ArrayList<>(expected);
+        Collections.sort(sorted, (a, b) -> Long.compare(
+                Long.parseLong(a.split(",")[2]), Long.parseLong(b.split(",")[2])));
+        assertEquals(sorted, rows);
+    }
+
+    public void testSortInMemory() throws IOException {
+        List<String> expected = fixture.getRows();
+        List<String> rows = getRows("sorted");
+
+        assertSorted(expected, rows);
+    }
+
+    public void testSortWithRuns() throws IOException {
+        List<String> expected = fixture.getRows();
+
+        // several runs spilled to disk, the last one smaller
+        fixture.getConfig().put("sortBufferCalls", (long) expected.size() / 7);
+        List<String> rows = getRows("sorted");
+
+        assertSorted(expected, rows);
+    }
+}
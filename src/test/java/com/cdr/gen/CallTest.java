@@ -0,0 +1,57 @@
+package com.cdr.gen;
+
+import java.util.UUID;
+import junit.framework.TestCase;
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+
+public class CallTest extends TestCase {
+
+    public CallTest(String testName) {
+        super(testName);
+    }
+
+    public void testViews() {
+        UUID id = UUID.randomUUID();
+        DateTime start = new DateTime(2024, 3, 10, 13, 45, 30);
+        Cell cell = CellStore.getDefault().getCell(3);
+
+        Call call = new Call();
+        call.setId(id);
+        call.setType("Mobile");
+        call.setTime(new Interval(start, start.plusMinutes(7)));
+        call.setCell(cell);
+        call.setDestPhoneNumber("05133123456");
+
+        assertEquals(id, call.getId());
+        assertEquals("Mobile", call.getType());
+        assertEquals(start, call.getTime().getStart());
+        assertEquals(420, call.getDuration());
+        assertEquals(cell.getId(), call.getCell().getId());
+        assertEquals(3, call.getCellIndex());
+        assertEquals("05133123456", call.getDestPhoneNumber());
+
+        Call copy = call.copy();
+        assertEquals(call, copy);
+        assertEquals(call.getTime(), copy.getTime());
+        assertFalse(call.equals(call.copyWithId(UUID.randomUUID())));
+
+        // calls without ids are told apart by their fields
+        Call other = new Call();
+        other.setTime(new Interval(start.plusMinutes(1), start.plusMinutes(8)));
+        Call same = new Call();
+        same.setTime(new Interval(start.plusMinutes(1), start.plusMinutes(8)));
+        assertFalse(new Call().equals(other));
+        assertEquals(same, other);
+        assertEquals(same.hashCode(), other.hashCode());
+    }
+
+    public void testCellOutsideStore() {
+        Call call = new Call();
+        call.setCell(new Cell("Other", 1.5, -2.5));
+
+        assertEquals("Other", call.getCell().getId());
+        assertEquals(1.5, call.getCell().getLat());
+        assertEquals(-2.5, call.getCell().getLon());
+    }
+}
@@ -1,10 +1,14 @@
 package com.cdr.gen;
 
+import com.cdr.gen.util.Rng;
+import java.util.HashMap;
+import java.util.Map;
 import junit.framework.TestCase;
 
 public class CellDistributionTest extends TestCase {
 
     private CellDistribution cellDistribution;
+    private Rng rng = new Rng(42);
 
     public CellDistributionTest(String testName) {
         super(testName);
@@ -13,7 +17,7 @@ public class CellDistributionTest extends TestCase {
     }
 
     public void testGetRandomCell() {
-        Cell cell = cellDistribution.getRandomCell();
+        Cell cell = cellDistribution.getRandomCell(rng);
 
         assertNotNull(cell);
     }
@@ -23,9 +27,37 @@ public class CellDistributionTest extends TestCase {
 
         double distance = 3750000;
 
-        Cell randomCell = cellDistribution.getRandomCell(cell.getId(), distance);
+        Cell randomCell = cellDistribution.getRandomCell(cell.getId(), distance, rng);
 
         assertNotNull(randomCell);
         assertTrue(cell.distance(randomCell) >= distance);
     }
+
+    public void testGetRandomCellWithDistanceIsUniform() {
+        Cell cell = cellDistribution.getCellById("Cell_0");
+        double distance = 2000000;
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (int i = 0; i < 10000; i++) {
+            Cell randomCell = cellDistribution.getRandomCell(cell.getId(), distance, rng);
+
+            assertTrue(cell.distance(randomCell) >= distance);
+            counts.merge(randomCell.getId(), 1, Integer::sum);
+        }
+
+        int expected = 10000 / counts.size();
+        for (int count : counts.values()) {
+            assertEquals(expected, count, expected * 0.2);
+        }
+    }
+
+    public void testGetCellById() {
+        assertEquals("Cell_3", cellDistribution.getCellById("Cell_3").getId());
+
+        try {
+            cellDistribution.getCellById("Unknown");
+            fail();
+        } catch (RuntimeException expected) {
+        }
+    }
 }
@@ -0,0 +1,48 @@
+package com.cdr.gen;
+
+import com.cdr.gen.util.Rng;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+public class CellIndexTest extends TestCase {
+
+    public CellIndexTest(String testName) {
+        super(testName);
+    }
+
+    public void testGetNearCells() {
+        Rng rng = new Rng(42);
+        int n = 5000;
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            lats[i] = rng.nextDouble() * 160 - 80;
+            lons[i] = rng.nextDouble() * 360 - 180;
+        }
+
+        CellIndex index = new CellIndex(lats, lons);
+
+        for (double distance : new double[]{1000, 500000, 3000000, 15000000}) {
+            for (int cell = 0; cell < n; cell += 97) {
+                int[] expected = new int[n];
+                int count = 0;
+
+                for (int other = 0; other < n; other++) {
+                    if (Cell.distance(lats[cell], lons[cell], lats[other], lons[other]) < distance) {
+                        expected[count++] = other;
+                    }
+                }
+
+                assertTrue(Arrays.equals(Arrays.copyOf(expected, count), index.getNearCells(cell, distance)));
+
+                int far = index.getRandomFarCell(cell, distance, rng);
+                if (count == n) {
+                    assertEquals(-1, far);
+                } else {
+                    assertTrue(Cell.distance(lats[cell], lons[cell], lats[far], lons[far]) >= distance);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.cdr.gen;
+
+import java.io.File;
+import java.io.IOException;
+import junit.framework.TestCase;
+
+public class CellStoreTest extends TestCase {
+
+    public CellStoreTest(String testName) {
+        super(testName);
+    }
+
+    public void testBinary() throws IOException {
+        CellStore cells = CellStore.getDefault();
+        File file = File.createTempFile("cells", ".bin");
+        file.deleteOnExit();
+
+        cells.writeBinary(file.toPath());
+        CellStore mapped = CellStore.get(file.getPath());
+
+        assertEquals(cells.size(), mapped.size());
+
+        for (int i = 0; i < cells.size(); i++) {
+            assertEquals(cells.getId(i), mapped.getId(i));
+            assertEquals(cells.getLat(i), mapped.getLat(i));
+            assertEquals(cells.getLon(i), mapped.getLon(i));
+            assertEquals(i, mapped.indexOf(cells.getId(i)));
+        }
+
+        assertSame(mapped, CellStore.get(file.getPath()));
+        assertEquals(-1, mapped.indexOf("Unknown"));
+    }
+}
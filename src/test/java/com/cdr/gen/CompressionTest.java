@@ -0,0 +1,72 @@
+package com.cdr.gen;
+
+import com.github.luben.zstd.ZstdInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import junit.framework.TestCase;
+import net.jpountz.lz4.LZ4FrameInputStream;
+
+public class CompressionTest extends TestCase {
+    private OutputFixture fixture;
+
+    public CompressionTest(String testName) {
+        super(testName);
+
+        fixture = new OutputFixture();
+    }
+
+    private byte[] write(Compression compression) throws IOException {
+        fixture.getConfig().put("compression", compression.getName());
+        Path file = Files.createTempFile("cdr", ".csv" + compression.getSuffix());
+
+        fixture.getGenerator().saveToFile(file.toString(), fixture.newPopulation());
+
+        byte[] bytes = Files.readAllBytes(file);
+        Files.delete(file);
+        return bytes;
+    }
+
+    private byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+
+        in.close();
+        return out.toByteArray();
+    }
+
+    public void testCompression() throws IOException {
+        // enough rows for several blocks
+        fixture.getConfig().put("numAccounts", 2000L);
+        byte[] plain = write(Compression.NONE);
+        assertTrue(plain.length > 8 << 20);
+
+        byte[] gzip = write(Compression.GZIP);
+        assertTrue(gzip.length < plain.length);
+        assertTrue(java.util.Arrays.equals(plain, readAll(new GZIPInputStream(new java.io.ByteArrayInputStream(gzip)))));
+
+        byte[] zstd = write(Compression.ZSTD);
+        assertTrue(zstd.length < plain.length);
+        assertTrue(java.util.Arrays.equals(plain, readAll(new ZstdInputStream(new java.io.ByteArrayInputStream(zstd)))));
+
+        byte[] lz4 = write(Compression.LZ4);
+        assertTrue(lz4.length < plain.length);
+        assertTrue(java.util.Arrays.equals(plain, readAll(new LZ4FrameInputStream(new java.io.ByteArrayInputStream(lz4)))));
+    }
+
+    public void testEmptyFile() throws IOException {
+        fixture.getConfig().put("numAccounts", 0L);
+        fixture.getConfig().put("displayHeaders", false);
+        byte[] gzip = write(Compression.GZIP);
+
+        assertEquals(0, readAll(new GZIPInputStream(new java.io.ByteArrayInputStream(gzip))).length);
+    }
+}
@@ -0,0 +1,89 @@
+package com.cdr.gen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+public class CsvWriterTest extends TestCase {
+    private CDRGen generator;
+
+    public CsvWriterTest(String testName) {
+        super(testName);
+
+        generator = new CDRGen();
+    }
+
+    private String getRow(Person p, Call c) {
+        DateTimeFormatter dateFormatter = DateTimeFormat.forPattern("dd/MM/yyyy");
+        DateTimeFormatter timeFormatter = DateTimeFormat.forPattern("HH:mm:ss");
+
+        return String.join(",", c.getId().toString(), c.getCell().getId(),
+                Double.toString(c.getCell().getLat()), Double.toString(c.getCell().getLon()),
+                p.getPhoneNumber(), Integer.toString(c.getLine()), c.getDestPhoneNumber(),
+                c.getTime().getStart().toString(dateFormatter), c.getTime().getEnd().toString(dateFormatter),
+                c.getTime().getStart().toString(timeFormatter), c.getTime().getEnd().toString(timeFormatter),
+                c.getType(), Double.toString(c.getCost()),
+                c.getFraud() == Fraud.FAR ? "1" : "0", c.getFraud() == Fraud.UNUSUAL ? "1" : "0");
+    }
+
+    public void testWrite() throws IOException {
+        generator.getConfig().put("seed", 42L);
+        generator.getConfig().put("includeLineId", true);
+        generator.getConfig().put("displayHeaders", true);
+
+        Population population = new Population(generator.getConfig());
+        population.create();
+
+        Path file = Files.createTempFile("cdr", ".csv");
+        generator.saveToFile(file.toString(), population.getPopulation());
+
+        List<String> expected = new ArrayList<>();
+        expected.add("uuid,cell_id,lat,lon,calling_number,line_id,called_number,start_date_dd_mm_yyyy,"
+                + "end_date_dd_mm_yyyy,start_time_hh_mm_ss,end_time_hh_mm_ss,call_type,cost,fraud,fraud_2");
+        for (Person p : population.getPopulation()) {
+            for (Call c : p.getCalls()) {
+                expected.add(getRow(p, c));
+            }
+        }
+
+        assertEquals(expected, Files.readAllLines(file, StandardCharsets.UTF_8));
+        Files.delete(file);
+    }
+
+    public void testColumns() throws IOException {
+        generator.getConfig().put("seed", 42L);
+        generator.getConfig().put("displayHeaders", true);
+        generator.getConfig().put("columns", Arrays.asList(
+                "calling_number", "called_number", "start_epoch", "duration_sec", "cell_id"));
+
+        Population population = new Population(generator.getConfig());
+        population.create();
+
+        Path file = Files.createTempFile("cdr", ".csv");
+        generator.saveToFile(file.toString(), population.getPopulation());
+
+        List<String> expected = new ArrayList<>();
+        expected.add("calling_number,called_number,start_epoch,duration_sec,cell_id");
+        for (Person p : population.getPopulation()) {
+            for (Call c : p.getCalls()) {
+                // ids and costs aren't generated for unused columns
+                assertEquals(0, c.getIdHigh());
+                assertEquals(0.0, c.getCost());
+
+                expected.add(String.join(",", p.getPhoneNumber(), c.getDestPhoneNumber(),
+                        Long.toString(c.getTime().getStartMillis() / 1000),
+                        Long.toString(c.getTime().toDurationMillis() / 1000), c.getCell().getId()));
+            }
+        }
+
+        assertEquals(expected, Files.readAllLines(file, StandardCharsets.UTF_8));
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,84 @@
+package com.cdr.gen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+public class FormatTablesTest extends TestCase {
+
+    public FormatTablesTest(String testName) {
+        super(testName);
+    }
+
+    private String decimal(double value, int decimals) {
+        byte[] bytes = new byte[64];
+        int length = FormatTables.writeDecimal(value, decimals, bytes, 0);
+        return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    public void testWriteDecimal() {
+        for (double value : new double[] {0, 120, 9999999, 1e7, 1.5, -8.77, 0.001, -0.0}) {
+            assertEquals(Double.toString(value), decimal(value, -1));
+        }
+
+        assertEquals("-8.770", decimal(-8.77, 3));
+        assertEquals("0.00", decimal(-0.001, 2));
+        assertEquals("2", decimal(1.5, 0));
+        assertEquals("120.000001", decimal(120.000001, 6));
+    }
+
+    public void testShortestDecimal() {
+        assertEquals("0.30000000000000004", decimal(0.1 + 0.2, -1));
+        assertEquals("1.0E-4", decimal(1e-4, -1));
+        assertEquals("1.0E7", decimal(1e7, -1));
+        assertEquals("1.2345678E7", decimal(12345678, -1));
+        assertEquals("9999999.999", decimal(9999999.999, -1));
+        assertEquals("4.9E-324", decimal(Double.MIN_VALUE, -1));
+        assertEquals("2.2250738585072014E-308", decimal(Double.MIN_NORMAL, -1));
+        assertEquals("1.7976931348623157E308", decimal(Double.MAX_VALUE, -1));
+        assertEquals("-Infinity", decimal(Double.NEGATIVE_INFINITY, -1));
+        assertEquals("NaN", decimal(Double.NaN, -1));
+        // before Java 19, 9.999999999999999E22 and 2.82879384806159008E17
+        assertEquals("1.0E23", decimal(1e23, -1));
+        assertEquals("2.82879384806159E17", decimal(2.82879384806159E17, -1));
+
+        // the digits read back as the same number, and are never more than
+        // Double.toString prints
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < 100000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(value)) {
+                continue;
+            }
+
+            String text = decimal(value, -1);
+            assertEquals(value, Double.parseDouble(text));
+            assertTrue(text.length() <= Double.toString(value).length());
+        }
+    }
+
+    public void testWriteDateAndTime() {
+        Map<String, Object> config = new HashMap<>();
+        config.put("startDate", "01/01/2014");
+        config.put("endDate", "01/03/2014");
+        FormatTables formats = new FormatTables(config);
+        byte[] bytes = new byte[32];
+
+        // inside and outside the configured range
+        for (DateTime time : new DateTime[] {new DateTime(2014, 2, 3, 4, 5, 6, DateTimeZone.UTC),
+                new DateTime(2014, 3, 1, 23, 59, 59, DateTimeZone.UTC),
+                new DateTime(2020, 12, 31, 0, 0, 0, DateTimeZone.UTC)}) {
+            long local = time.getMillis();
+
+            int pos = formats.writeDate(local, bytes, 0);
+            bytes[pos++] = ' ';
+            pos = formats.writeTime(local, bytes, pos);
+
+            assertEquals(time.toString("dd/MM/yyyy HH:mm:ss"),
+                    new String(bytes, 0, pos, StandardCharsets.US_ASCII));
+        }
+    }
+}
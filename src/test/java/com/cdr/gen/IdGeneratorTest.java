@@ -0,0 +1,69 @@
+package com.cdr.gen;
+
+import com.cdr.gen.util.Rng;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import junit.framework.TestCase;
+
+public class IdGeneratorTest extends TestCase {
+
+    public IdGeneratorTest(String testName) {
+        super(testName);
+    }
+
+    private IdGenerator create(String strategy, long shard) {
+        Map<String, Object> config = new HashMap<>();
+        config.put("idStrategy", strategy);
+        return IdGenerator.create(config, shard);
+    }
+
+    public void testRandom() {
+        IdGenerator generator = create(IdGenerator.RANDOM, 0);
+        Rng rng = new Rng(42);
+        Call call = new Call();
+        Set<UUID> ids = new HashSet<>();
+
+        for (int i=0; i<1000; i++) {
+            generator.next(call, rng);
+            UUID id = call.getId();
+
+            assertEquals(4, id.version());
+            assertEquals(2, id.variant());
+            assertEquals(id.toString(), generator.toString(call.getIdHigh(), call.getIdLow()));
+            assertTrue(ids.add(id));
+        }
+    }
+
+    public void testTime() {
+        IdGenerator generator = create(IdGenerator.TIME, 0);
+        Rng rng = new Rng(42);
+        Call call = new Call();
+        String last = "";
+
+        for (int i=0; i<1000; i++) {
+            call.setTime(1700000000L + i * 60, 60);
+            generator.next(call, rng);
+            String id = generator.toString(call.getIdHigh(), call.getIdLow());
+
+            assertEquals(7, call.getId().version());
+            assertEquals(call.getId().toString(), id);
+            assertEquals(call.getStartSecond() * 1000, call.getIdHigh() >>> 16);
+            assertTrue(id.compareTo(last) > 0);
+            last = id;
+        }
+    }
+
+    public void testSequence() {
+        IdGenerator generator = create(IdGenerator.SEQUENCE, 3);
+        Call call = new Call();
+
+        generator.next(call, null);
+        assertEquals("12884901888", generator.toString(call.getIdHigh(), call.getIdLow()));
+        generator.next(call, null);
+        assertEquals(3L << 32 | 1, call.getIdLow());
+        assertEquals("0", generator.toString(0, 0));
+    }
+}
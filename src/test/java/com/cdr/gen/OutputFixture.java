@@ -0,0 +1,87 @@
+package com.cdr.gen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A seeded generator for the tests of the output modes, with the rows of a
+ * single file to compare their output with, and the cleanup of what they write.
+ */
+class OutputFixture {
+    private final CDRGen generator = new CDRGen();
+
+    /**
+     * @param columns The columns of the rows, or none for the default ones
+     */
+    OutputFixture(String... columns) {
+        generator.getConfig().put("seed", 42L);
+
+        if (columns.length > 0) {
+            generator.getConfig().put("columns", new ArrayList<>(Arrays.asList(columns)));
+        }
+    }
+
+    CDRGen getGenerator() {
+        return generator;
+    }
+
+    Map<String, Object> getConfig() {
+        return generator.getConfig();
+    }
+
+    Population newPopulation() {
+        return new Population(generator.getConfig());
+    }
+
+    /**
+     * @return The rows of the calls written to a single file, in the order
+     *         they are generated
+     */
+    List<String> getRows() throws IOException {
+        Path file = Files.createTempFile("cdr", ".csv");
+        generator.saveToFile(file.toString(), newPopulation());
+
+        List<String> rows = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Files.delete(file);
+        return rows;
+    }
+
+    /**
+     * @param mode An output mode that writes a single file
+     * @param parallelism The number of threads generating the population
+     * @return The rows of the file
+     */
+    List<String> getRows(String mode, int parallelism) throws IOException {
+        generator.getConfig().put("outputMode", mode);
+        Path file = Files.createTempFile("cdr", "");
+        List<Path> files = generator.save(file.toString(), newPopulation(), parallelism);
+
+        List<String> rows = Files.readAllLines(files.get(0), StandardCharsets.UTF_8);
+        Files.delete(files.get(0));
+        Files.delete(file);
+        return rows;
+    }
+
+    /**
+     * Deletes a file or a directory with all its contents.
+     */
+    static void delete(Path path) throws IOException {
+        List<Path> all = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(path)) {
+            paths.forEach(all::add);
+        }
+
+        Collections.reverse(all);
+        for (Path p : all) {
+            Files.delete(p);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.cdr.gen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import junit.framework.TestCase;
+
+public class PartitionedWriterTest extends TestCase {
+    private OutputFixture fixture;
+
+    public PartitionedWriterTest(String testName) {
+        super(testName);
+
+        fixture = new OutputFixture("uuid", "cell_id", "calling_number", "start_date_dd_mm_yyyy",
+                "start_time_hh_mm_ss");
+    }
+
+    private List<Path> savePartitions(Path dir, int parallelism) {
+        return fixture.getGenerator().saveToPartitions(dir.resolve("cdr").toString(),
+                fixture.newPopulation(), parallelism);
+    }
+
+    private List<String> readPartitions(Path dir, List<Path> files, boolean cellBuckets) throws IOException {
+        List<String> rows = new ArrayList<>();
+
+        for (Path file : files) {
+            Path partition = dir.relativize(file).getParent();
+            String date = partition.getName(0).toString();
+            assertTrue(date.startsWith("dt="));
+
+            for (String row : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] values = row.split(",");
+                // dd/MM/yyyy
+                String day = values[3].substring(6) + "-" + values[3].substring(3, 5) + "-" + values[3].substring(0, 2);
+                assertEquals("dt=" + day, date);
+
+                if (cellBuckets) {
+                    assertEquals("cell_bucket=" + Math.floorMod(values[1].hashCode(), 4),
+                            partition.getName(1).toString());
+                }
+                rows.add(row);
+            }
+        }
+
+        return rows;
+    }
+
+    public void testPartitions() throws IOException {
+        // small buffers, so that the files are appended to several times
+        fixture.getConfig().put("partitionBufferSize", 4096L);
+        fixture.getConfig().put("partitionMemory", 16384L);
+        List<String> expected = fixture.getRows();
+
+        Path dir = Files.createTempDirectory("cdr");
+        List<Path> files = savePartitions(dir, 2);
+
+        Set<Path> partitions = new HashSet<>();
+        for (Path file : files) {
+            partitions.add(file.getParent());
+        }
+        assertTrue(partitions.size() > 4);
+        assertEquals(partitions.size(), files.size());
+
+        List<String> rows = readPartitions(dir, files, false);
+        Collections.sort(expected);
+        Collections.sort(rows);
+        assertEquals(expected, rows);
+
+        OutputFixture.delete(dir);
+    }
+
+    public void testCompressedPartitions() throws IOException {
+        fixture.getConfig().put("partitionBufferSize", 4096L);
+        fixture.getConfig().put("partitionMemory", 16384L);
+        List<String> expected = fixture.getRows();
+
+        fixture.getConfig().put("compression", "gzip");
+        Path dir = Files.createTempDirectory("cdr");
+        List<Path> files = savePartitions(dir, 2);
+
+        // each buffer written is a gzip member, read as one stream
+        List<String> rows = new ArrayList<>();
+        for (Path file : files) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                reader.lines().forEach(rows::add);
+            }
+        }
+
+        Collections.sort(expected);
+        Collections.sort(rows);
+        assertEquals(expected, rows);
+
+        OutputFixture.delete(dir);
+    }
+
+    public void testCellBuckets() throws IOException {
+        fixture.getConfig().put("partitionCellBuckets", 4L);
+        List<String> expected = fixture.getRows();
+
+        Path dir = Files.createTempDirectory("cdr");
+        List<Path> files = savePartitions(dir, 1);
+
+        List<String> rows = readPartitions(dir, files, true);
+        Collections.sort(expected);
+        Collections.sort(rows);
+        assertEquals(expected, rows);
+
+        OutputFixture.delete(dir);
+    }
+}
@@ -0,0 +1,53 @@
+package com.cdr.gen;
+
+import com.cdr.gen.util.Rng;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import junit.framework.TestCase;
+
+public class PhoneCodeTableTest extends TestCase {
+
+    public PhoneCodeTableTest(String testName) {
+        super(testName);
+    }
+
+    private PhoneCodeTable load(String csv) throws IOException {
+        return PhoneCodeTable.load(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public void testLoad() throws IOException {
+        PhoneCodeTable table = load("typeName;StartNumber\nFree;0800\nLocal;5133\nFree;800\nFree;0500\n");
+
+        assertEquals(2, table.getTypes().size());
+        assertEquals(-1, table.getType("Intl"));
+
+        int free = table.getType("Free");
+        assertEquals(3, table.size(free));
+        assertEquals("800", table.getCodeString(free, 0));
+        assertEquals("0500", table.getCodeString(free, 1));
+        assertEquals("0800", table.getCodeString(free, 2));
+
+        assertEquals(2, table.indexOf(free, 800, 4));
+        assertEquals(0, table.indexOf(free, 800, 3));
+        assertEquals(-1, table.indexOf(free, 5133, 4));
+    }
+
+    public void testGetRandomCodeExcludes() throws IOException {
+        PhoneCodeTable table = load("typeName;StartNumber\nMobile;91\nMobile;92\nMobile;93\nLocal;5133\n");
+        int mobile = table.getType("Mobile");
+        int[] counts = new int[3];
+        Rng rng = new Rng(42);
+
+        for (int i=0; i<30000; i++) {
+            counts[table.getRandomCode(mobile, 1, rng)]++;
+        }
+
+        assertEquals(0, counts[1]);
+        assertTrue(Math.abs(counts[0] - 15000) < 500);
+        assertTrue(Math.abs(counts[2] - 15000) < 500);
+
+        // the only code is returned even if excluded
+        assertEquals(0, table.getRandomCode(table.getType("Local"), 0, rng));
+    }
+}
@@ -1,8 +1,9 @@
 package com.cdr.gen;
 
+import com.cdr.gen.util.Rng;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import junit.framework.TestCase;
 
 public class PhoneNumberTest extends TestCase {
@@ -15,9 +16,28 @@ public class PhoneNumberTest extends TestCase {
         
         List<String> types = Arrays.asList("Local", "PRS", "Intl", "Mobile", "National", "Free");
         
-        for (Map.Entry<String, List<String>> entry : PhoneNumberGenerator.PHONE_CODES.entrySet()) {
-            System.out.println(entry.getKey());
-            assertTrue(types.contains(entry.getKey()));
+        for (String type : PhoneCodeTable.getDefault().getTypes()) {
+            System.out.println(type);
+            assertTrue(types.contains(type));
         }
     }
+    
+    public void testPackedNumbers() {
+        Rng rng = new Rng(42);
+        
+        for (int i=0; i<1000; i++) {
+            long number = PhoneNumberGenerator.getRandomNumber(5193L, 4, rng);
+            String text = PhoneNumberGenerator.toString(number);
+            
+            assertEquals(PhoneNumberGenerator.NUMBER_LENGTH, text.length());
+            assertTrue(text.startsWith("5193"));
+            assertEquals(number, PhoneNumberGenerator.parse(text));
+            
+            byte[] bytes = new byte[PhoneNumberGenerator.NUMBER_LENGTH + 2];
+            assertEquals(PhoneNumberGenerator.NUMBER_LENGTH, PhoneNumberGenerator.write(number, bytes, 1));
+            assertEquals(text, new String(bytes, 1, PhoneNumberGenerator.NUMBER_LENGTH, StandardCharsets.US_ASCII));
+        }
+        
+        assertEquals("00000000042", PhoneNumberGenerator.toString(42));
+    }
 }
@@ -2,7 +2,13 @@ package com.cdr.gen;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import junit.framework.TestCase;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -65,4 +71,205 @@ public class PopulationTest extends TestCase {
             ex.printStackTrace();
         } 
     }
+
+    /**
+     * Test of create method with a consumer, of class Population.
+     */
+    public void testCreateStreaming() {
+        Population population = new Population(generator.getConfig());
+        final int[] count = new int[1];
+
+        population.create(p -> {
+            assertNotNull(p.getPhoneNumber());
+            assertTrue(p.getCalls().size() >= p.getNumCalls());
+            count[0]++;
+        });
+
+        assertEquals(generator.getConfig().get("numAccounts"), (long) count[0]);
+        assertTrue(population.getPopulation().isEmpty());
+    }
+
+    /**
+     * Test of create method with several threads, of class Population.
+     */
+    public void testCreateParallel() {
+        Population population = new Population(generator.getConfig());
+        final List<Person> persons = new ArrayList<Person>();
+
+        population.create(persons::add, 4);
+
+        assertEquals(generator.getConfig().get("numAccounts"), (long) persons.size());
+    }
+
+    /**
+     * Test that the same seed creates the same population, regardless of the
+     * number of threads.
+     */
+    public void testCreateWithSeed() {
+        generator.getConfig().put("seed", 42L);
+        final List<Person> sequential = new ArrayList<Person>();
+        final List<Person> parallel = new ArrayList<Person>();
+
+        new Population(generator.getConfig()).create(sequential::add);
+        new Population(generator.getConfig()).create(parallel::add, 3);
+
+        assertEquals(sequential.size(), parallel.size());
+
+        for (int i=0; i<sequential.size(); i++) {
+            Person one = sequential.get(i);
+            Person two = parallel.get(i);
+
+            assertEquals(one.getPhoneNumber(), two.getPhoneNumber());
+            assertEquals(one.getCalls().size(), two.getCalls().size());
+
+            for (int j=0; j<one.getCalls().size(); j++) {
+                assertEquals(one.getCalls().get(j).getId(), two.getCalls().get(j).getId());
+                assertEquals(one.getCalls().get(j).getTime(), two.getCalls().get(j).getTime());
+                assertEquals(one.getCalls().get(j).getDestPhoneNumber(), two.getCalls().get(j).getDestPhoneNumber());
+            }
+        }
+    }
+
+    /**
+     * Test that exactly the configured number of fraud calls is injected.
+     */
+    public void testCreateFraudCalls() {
+        Map<String, Object> fraud = (Map<String, Object>) generator.getConfig().get("fraud");
+        final int[] count = new int[1];
+
+        new Population(generator.getConfig()).create(p -> {
+            for (Call c : p.getCalls()) {
+                if (c.getFraud() == Fraud.FAR) {
+                    count[0]++;
+                }
+            }
+        }, 2);
+
+        assertEquals(fraud.get("count"), (long) count[0]);
+    }
+    
+    public void testPhoneNumbersAreUnique() {
+        generator.getConfig().put("seed", 42L);
+        long numAccounts = (Long) generator.getConfig().get("numAccounts");
+        Set<Long> numbers = new HashSet<>();
+        
+        // two processes numbering consecutive ranges of accounts
+        for (long first = 0; first < 2 * numAccounts; first += numAccounts) {
+            generator.getConfig().put("firstAccount", first);
+            new Population(generator.getConfig()).create(p -> assertTrue(numbers.add(p.getNumber())), 2);
+        }
+        
+        assertEquals(2 * numAccounts, numbers.size());
+    }
+
+    /**
+     * @return The fields of the calls that don't depend on the columns
+     */
+    private List<String> getCalls() {
+        List<String> calls = new ArrayList<>();
+
+        new Population(generator.getConfig()).create(p -> {
+            for (Call c : p.getCalls()) {
+                calls.add(p.getNumber() + "," + c.getStartSecond() + "," + c.getDuration() + ","
+                        + c.getCellIndex() + "," + c.getDestNumber() + "," + c.getType() + ","
+                        + c.getFraud());
+            }
+        }, 2);
+
+        return calls;
+    }
+
+    /**
+     * Test that the id strategy changes only the ids of the calls.
+     */
+    public void testIdStrategyChangesOnlyIds() {
+        generator.getConfig().put("seed", 42L);
+        List<String> expected = getCalls();
+
+        for (String strategy : new String[]{IdGenerator.TIME, IdGenerator.SEQUENCE}) {
+            generator.getConfig().put("idStrategy", strategy);
+            assertEquals(expected, getCalls());
+        }
+    }
+
+    /**
+     * Test that leaving the uuid column out changes nothing else.
+     */
+    public void testColumnsDontChangeCalls() {
+        generator.getConfig().put("seed", 42L);
+        List<String> expected = getCalls();
+
+        generator.getConfig().put("columns", new ArrayList<>(Arrays.asList("calling_number", "start_epoch")));
+        assertEquals(expected, getCalls());
+    }
+
+    /**
+     * Test that calls moved to a free slot don't overlap and mostly stay in
+     * the day they were drawn for.
+     */
+    public void testFreePlacement() {
+        generator.getConfig().put("seed", 42L);
+        List<String> days = new ArrayList<>();
+        new Population(generator.getConfig()).create(p -> {
+            for (Call c : p.getCalls()) {
+                days.add(p.getNumber() + "," + c.getStartSecond() / 86400);
+            }
+        }, 2);
+
+        generator.getConfig().put("callPlacement", "free");
+        List<String> moved = new ArrayList<>();
+
+        new Population(generator.getConfig()).create(p -> {
+            List<Call> calls = new ArrayList<>();
+            for (Call c : p.getCalls()) {
+                if (c.getFraud() != Fraud.FAR) {
+                    calls.add(c);
+                }
+            }
+            calls.sort((a, b) -> Long.compare(a.getStartSecond(), b.getStartSecond()));
+
+            for (int i = 1; i < calls.size(); i++) {
+                Call last = calls.get(i - 1);
+                assertTrue(calls.get(i).getStartSecond() >= last.getStartSecond() + Math.max(60, last.getDuration()));
+            }
+            for (Call c : p.getCalls()) {
+                moved.add(p.getNumber() + "," + c.getStartSecond() / 86400);
+            }
+        }, 2);
+
+        // the calls placed at once keep the histogram of days of the retried ones
+        Map<String, Integer> counts = new HashMap<>();
+        for (String day : days) {
+            counts.merge(day.substring(day.indexOf(',') + 1), 1, Integer::sum);
+        }
+        Map<String, Integer> movedCounts = new HashMap<>();
+        for (String day : moved) {
+            movedCounts.merge(day.substring(day.indexOf(',') + 1), 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            int other = movedCounts.getOrDefault(entry.getKey(), 0);
+            assertTrue(entry.getKey() + ": " + entry.getValue() + " and " + other,
+                    Math.abs(entry.getValue() - other) <= Math.max(20, entry.getValue() / 5));
+        }
+    }
+
+    public void testDisjointRangesHaveDistinctCalls() {
+        generator.getConfig().put("seed", 42L);
+        long numAccounts = (Long) generator.getConfig().get("numAccounts");
+        List<List<Long>> starts = new ArrayList<>();
+
+        // two processes with the same seed and consecutive ranges of accounts
+        for (long first = 0; first < 2 * numAccounts; first += numAccounts) {
+            List<Long> range = new ArrayList<>();
+            generator.getConfig().put("firstAccount", first);
+            new Population(generator.getConfig()).create(p -> {
+                for (Call c : p.getCalls()) {
+                    range.add(c.getStartSecond());
+                }
+            }, 2);
+            starts.add(range);
+        }
+
+        assertFalse(starts.get(0).equals(starts.get(1)));
+    }
 }
@@ -0,0 +1,88 @@
+package com.cdr.gen;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+public class ReplaySinkTest extends TestCase {
+    private OutputFixture fixture;
+    private Map<String, Object> config;
+
+    public ReplaySinkTest(String testName) {
+        super(testName);
+
+        fixture = new OutputFixture("uuid", "calling_number", "start_epoch", "called_number");
+        config = fixture.getConfig();
+        config.put("numAccounts", 20L);
+    }
+
+    private List<String> getRows(String mode) throws IOException {
+        return fixture.getRows(mode, 1);
+    }
+
+    public void testRate() throws IOException {
+        List<String> expected = getRows("sorted");
+
+        // about half a second of calls, in batches of 100
+        config.put("replayRate", expected.size() * 2L);
+        config.put("replayBatch", 100L);
+
+        long start = System.nanoTime();
+        List<String> rows = getRows("replay");
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        assertEquals(expected, rows);
+        // less the tenth of a second of calls written at once at the start
+        assertTrue("elapsed " + elapsed, elapsed >= 0.38);
+    }
+
+    public void testWindows() throws IOException {
+        List<String> expected = getRows("sorted");
+
+        for (long days : new long[]{1, 3, 1000}) {
+            config.put("replayWindowDays", days);
+            assertEquals(expected, getRows("replay"));
+        }
+    }
+
+    public void testAchievedRate() throws IOException {
+        List<Call> calls = new ArrayList<>();
+        fixture.newPopulation().create(p -> calls.addAll(p.getCalls()));
+
+        config.put("replayRate", 20000L);
+        config.put("replayBatch", 100L);
+        Path file = Files.createTempFile("cdr", ".csv");
+
+        // 2000 calls go at once, then 8000 calls take about 0.4 s
+        try (ReplaySink sink = new ReplaySink(new CsvWriter(file, config), config)) {
+            for (int i = 0; i < 10000; i++) {
+                sink.write(i, calls.get(i % calls.size()));
+            }
+
+            double rate = sink.getAchievedRate();
+            assertTrue("rate " + rate, rate > 18000 && rate < 21000);
+        }
+
+        Files.delete(file);
+    }
+
+    public void testSpeed() throws IOException {
+        List<String> expected = getRows("sorted");
+
+        // the calls span about half a second
+        long first = Long.parseLong(expected.get(0).split(",")[2]);
+        long last = Long.parseLong(expected.get(expected.size() - 1).split(",")[2]);
+        config.put("replaySpeed", (last - first) * 2.0);
+
+        long start = System.nanoTime();
+        List<String> rows = getRows("replay");
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        assertEquals(expected, rows);
+        assertTrue("elapsed " + elapsed, elapsed >= 0.45);
+    }
+}
@@ -0,0 +1,91 @@
+package com.cdr.gen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+public class RollingWriterTest extends TestCase {
+    private OutputFixture fixture;
+
+    public RollingWriterTest(String testName) {
+        super(testName);
+
+        fixture = new OutputFixture();
+    }
+
+    private List<Path> saveParts(Path dir, int parallelism) {
+        return fixture.getGenerator().saveToParts(dir.resolve("cdr").toString(), fixture.newPopulation(),
+                parallelism);
+    }
+
+    public void testRecordLimit() throws IOException, ParseException {
+        fixture.getConfig().put("partMaxRecords", 1000L);
+        fixture.getConfig().put("writerThreads", 3L);
+        List<String> expected = fixture.getRows();
+
+        Path dir = Files.createTempDirectory("cdr");
+        List<Path> files = saveParts(dir, 2);
+
+        Path manifest = files.get(files.size() - 1);
+        assertEquals(dir.resolve("cdr-manifest.json"), manifest);
+
+        JSONObject json = (JSONObject) new JSONParser().parse(
+                new String(Files.readAllBytes(manifest), StandardCharsets.UTF_8));
+        List<Map<String, Object>> parts = (List<Map<String, Object>>) json.get("parts");
+        assertEquals(files.size() - 1, parts.size());
+        assertEquals((long) expected.size(), json.get("records"));
+
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            Path file = files.get(i);
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+            assertEquals(String.format("cdr-part-%05d.csv", i), parts.get(i).get("file"));
+            assertEquals((long) lines.size(), parts.get(i).get("records"));
+            assertEquals(Files.size(file), parts.get(i).get("bytes"));
+            assertTrue(lines.size() <= 1000);
+            rows.addAll(lines);
+        }
+
+        // the writers share the rows, in any order
+        Collections.sort(expected);
+        Collections.sort(rows);
+        assertEquals(expected, rows);
+
+        OutputFixture.delete(dir);
+    }
+
+    public void testByteLimit() throws IOException {
+        fixture.getConfig().put("partMaxBytes", 100000L);
+        fixture.getConfig().put("displayHeaders", true);
+        List<String> expected = fixture.getRows();
+
+        Path dir = Files.createTempDirectory("cdr");
+        List<Path> files = saveParts(dir, 1);
+        assertTrue(files.size() > 2);
+
+        // a single writer keeps the order, with the headers in every part
+        List<String> rows = new ArrayList<>();
+        rows.add(expected.get(0));
+        for (Path file : files.subList(0, files.size() - 1)) {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+            assertEquals(expected.get(0), lines.get(0));
+            // the part is cut at the first row past the limit
+            assertTrue(Files.size(file) < 100000 + 1000);
+            rows.addAll(lines.subList(1, lines.size()));
+        }
+        assertEquals(expected, rows);
+
+        OutputFixture.delete(dir);
+    }
+}
@@ -0,0 +1,42 @@
+package com.cdr.gen.util;
+
+import junit.framework.TestCase;
+
+public class AliasSamplerTest extends TestCase {
+    private Rng rng = new Rng(42);
+
+    public AliasSamplerTest(String testName) {
+        super(testName);
+    }
+
+    public void testNext() {
+        // the weights don't sum to one
+        double[] weights = new double[]{0.2222, 0.1111, 0.1111, 0.1111, 0.1111, 0.1111, 0.2222, 0};
+        AliasSampler sampler = new AliasSampler(weights);
+        int[] counts = new int[weights.length];
+        int n = 1000000;
+
+        for (int i=0; i<n; i++) {
+            counts[sampler.next(rng)]++;
+        }
+
+        for (int i=0; i<weights.length; i++) {
+            assertEquals(weights[i] / 0.9999, counts[i] / (double) n, 0.002);
+        }
+        assertEquals(0, counts[weights.length - 1]);
+    }
+
+    public void testInvalidWeights() {
+        try {
+            new AliasSampler(new double[]{0, 0});
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        try {
+            new AliasSampler(new double[]{0.5, -0.5});
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.cdr.gen.util;
+
+import junit.framework.TestCase;
+
+public class FeistelPermutationTest extends TestCase {
+
+    public FeistelPermutationTest(String testName) {
+        super(testName);
+    }
+
+    public void testPermute() {
+        for (long size : new long[] {1, 2, 7, 1000, 4096, 12345}) {
+            FeistelPermutation permutation = new FeistelPermutation(size, 42);
+            boolean[] seen = new boolean[(int) size];
+
+            for (long i = 0; i < size; i++) {
+                long value = permutation.permute(i);
+                assertTrue(value >= 0 && value < size);
+                assertFalse(seen[(int) value]);
+                seen[(int) value] = true;
+            }
+        }
+    }
+
+    public void testKey() {
+        FeistelPermutation one = new FeistelPermutation(1000000, 1);
+        FeistelPermutation two = new FeistelPermutation(1000000, 2);
+        int same = 0;
+
+        for (long i = 0; i < 1000; i++) {
+            assertEquals(one.permute(i), new FeistelPermutation(1000000, 1).permute(i));
+            if (one.permute(i) == two.permute(i)) {
+                same++;
+            }
+        }
+
+        assertTrue(same < 10);
+    }
+}
@@ -0,0 +1,52 @@
+package com.cdr.gen.util;
+
+import junit.framework.TestCase;
+
+public class GaussianSamplerTest extends TestCase {
+    private Rng rng = new Rng(42);
+
+    public GaussianSamplerTest(String testName) {
+        super(testName);
+    }
+
+    public void testNext() {
+        GaussianSampler sampler = new GaussianSampler(5, 200);
+        double sum = 0, sumSq = 0;
+        int n = 100000;
+
+        for (int i=0; i<n; i++) {
+            double v = sampler.next(rng);
+            sum += v;
+            sumSq += v * v;
+        }
+
+        double mean = sum / n;
+        double stdDev = Math.sqrt(sumSq / n - mean * mean);
+
+        assertEquals(200, mean, 0.1);
+        assertEquals(5, stdDev, 0.1);
+    }
+
+    public void testTruncated() {
+        // most of the distribution lies below the bound
+        GaussianSampler sampler = new GaussianSampler(3, 1, 1);
+
+        for (int i=0; i<100000; i++) {
+            assertTrue(sampler.next(rng) >= 1);
+        }
+
+        // the bound is far in the tail
+        sampler = new GaussianSampler(1, -10, 1);
+
+        for (int i=0; i<1000; i++) {
+            double v = sampler.next(rng);
+            assertTrue(v >= 1 && v < 2);
+        }
+    }
+
+    public void testInverseNormalCdf() {
+        for (double x = -6; x <= 6; x += 0.25) {
+            assertEquals(x, GaussianSampler.inverseNormalCdf(GaussianSampler.normalCdf(x)), 1e-4);
+        }
+    }
+}
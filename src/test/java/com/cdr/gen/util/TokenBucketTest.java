@@ -0,0 +1,31 @@
+package com.cdr.gen.util;
+
+import junit.framework.TestCase;
+
+public class TokenBucketTest extends TestCase {
+
+    public TokenBucketTest(String testName) {
+        super(testName);
+    }
+
+    public void testRate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100000, 1000);
+        long start = System.nanoTime();
+
+        // the first batch is taken at once, the other 49 at the rate
+        for (int i = 0; i < 50; i++) {
+            bucket.acquire(1000);
+        }
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        assertTrue("elapsed " + elapsed, elapsed >= 0.48);
+        assertTrue("elapsed " + elapsed, elapsed < 2);
+    }
+
+    public void testSleepUntil() throws InterruptedException {
+        long deadline = System.nanoTime() + 20000000L;
+        TokenBucket.sleepUntil(deadline);
+
+        assertTrue(System.nanoTime() >= deadline);
+    }
+}